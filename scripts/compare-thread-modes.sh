@@ -0,0 +1,73 @@
+#!/usr/bin/env bash
+# Runs the same load against the platform thread pool and against virtual threads, on this machine,
+# one mode after the other. Needs Java 21+, wrk, a running Postgres for the local profile and a
+# user with user:read. Build first with ./mvnw -DskipTests package
+#
+#   USERNAME=admin PASSWORD=secret scripts/compare-thread-modes.sh
+#
+# CONNECTIONS should be well above PLATFORM_THREADS, otherwise both modes look the same.
+# URL should wait on I/O, the default listing hits Postgres on every call. Compare the two
+# results on the same hardware only, and raise spring.datasource.hikari.maximum-pool-size
+# for both runs if the pool, not the threads, turns out to be the limit.
+set -euo pipefail
+
+JAR=${JAR:-$(ls target/supportportal-*.jar | grep -v original | head -1)}
+PORT=${PORT:-8081}
+MANAGEMENT_PORT=${MANAGEMENT_PORT:-8082}
+URL=${URL:-http://localhost:$PORT/users?size=100}
+CONNECTIONS=${CONNECTIONS:-1000}
+DURATION=${DURATION:-60s}
+WARMUP=${WARMUP:-15s}
+PLATFORM_THREADS=${PLATFORM_THREADS:-200}
+OUT=${OUT:-target/thread-modes}
+
+mkdir -p "$OUT"
+
+APP_PID=
+trap '[ -n "$APP_PID" ] && kill "$APP_PID" 2> /dev/null || true' EXIT
+
+wait_for_health() {
+    for _ in $(seq 1 120); do
+        if curl -sf "http://localhost:$MANAGEMENT_PORT/actuator/health" > /dev/null; then
+            return 0
+        fi
+        sleep 1
+    done
+    echo "application did not become healthy" >&2
+    return 1
+}
+
+login() {
+    curl -si -H 'Content-Type: application/json' \
+        -d "{\"username\":\"$USERNAME\",\"password\":\"$PASSWORD\"}" \
+        "http://localhost:$PORT/login" | tr -d '\r' | awk -F': ' 'tolower($1) == "jwt-token" {print $2}'
+}
+
+live_threads() {
+    curl -s "http://localhost:$MANAGEMENT_PORT/actuator/prometheus" | awk '/^jvm_threads_live_threads/ {print $2}'
+}
+
+run_mode() {
+    local mode=$1 virtual=$2
+    java -jar "$JAR" --supportportal.threads.virtual="$virtual" \
+        --server.tomcat.threads.max="$PLATFORM_THREADS" > "$OUT/$mode-app.log" 2>&1 &
+    APP_PID=$!
+    wait_for_health
+    local token=${TOKEN:-$(login)}
+
+    wrk -t4 -c"$CONNECTIONS" -d"$WARMUP" -H "Authorization: Bearer $token" "$URL" > /dev/null
+    wrk -t4 -c"$CONNECTIONS" -d"$DURATION" --latency -H "Authorization: Bearer $token" "$URL" > "$OUT/$mode-wrk.txt"
+    echo "live platform threads after run: $(live_threads)" >> "$OUT/$mode-wrk.txt"
+
+    kill "$APP_PID"
+    wait "$APP_PID" 2> /dev/null || true
+    APP_PID=
+}
+
+run_mode platform false
+run_mode virtual true
+
+for mode in platform virtual; do
+    echo "== $mode"
+    grep -E 'Requests/sec|Latency|50%|99%|Non-2xx|Socket errors|live platform threads' "$OUT/$mode-wrk.txt"
+done
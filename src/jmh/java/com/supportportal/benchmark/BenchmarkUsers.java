@@ -0,0 +1,26 @@
+package com.supportportal.benchmark;
+
+import com.supportportal.entity.User;
+import com.supportportal.security.enumeration.Role;
+
+import java.util.Date;
+
+final class BenchmarkUsers {
+
+    private BenchmarkUsers(){}
+
+    static User user(String username, Role role) {
+        return User.builder()
+                .id(1L)
+                .userId("0123456789")
+                .username(username)
+                .firstName("Bench")
+                .lastName("Mark")
+                .email(username + "@supportportal.com")
+                .joinDate(new Date())
+                .isActive(true)
+                .isNotLocked(true)
+                .role(role.name())
+                .build();
+    }
+}
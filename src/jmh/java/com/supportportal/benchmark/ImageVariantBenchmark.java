@@ -0,0 +1,71 @@
+package com.supportportal.benchmark;
+
+import com.supportportal.service.ImageVariantService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// variant generation for one upload (decode once, three downscales, three encodes) against the original's edge length
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageVariantBenchmark {
+
+    private static final String HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Param({"512", "1024", "2048", "4096"})
+    public int edge;
+
+    private ImageVariantService imageVariantService;
+    private Path folder;
+    private Path original;
+
+    @Setup
+    public void setUp() throws IOException {
+        imageVariantService = new ImageVariantService(1, 1, 25_000_000);
+        folder = Files.createTempDirectory("image-variant-benchmark");
+        original = folder.resolve(HASH + ".jpg");
+        BufferedImage image = new BufferedImage(edge, edge, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        // a gradient compresses like a photo rather than a flat fill
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, edge, edge, Color.BLUE));
+        graphics.fillRect(0, 0, edge, edge);
+        graphics.dispose();
+        ImageIO.write(image, "jpeg", original.toFile());
+    }
+
+    @Benchmark
+    public int generateVariants() throws IOException {
+        int written = imageVariantService.generate(original);
+        deleteVariants();
+        return written;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deleteVariants();
+        Files.deleteIfExists(original);
+        Files.deleteIfExists(folder);
+        imageVariantService.destroy();
+    }
+
+    private void deleteVariants() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.equals(original)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.supportportal.benchmark;
+
+import com.supportportal.entity.UserPrinciple;
+import com.supportportal.security.JwtTokenProvider;
+import com.supportportal.security.VerifiedTokenCache;
+import com.supportportal.security.filter.JwtAuthorizationFilter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.supportportal.security.enumeration.Role.ROLE_SUPER_ADMIN;
+import static com.supportportal.utility.constants.SecurityConstant.TOKEN_PREFIX;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+// the whole filter on a cached token, "none" records into no-op timers so the difference is the metrics overhead
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthorizationFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+
+    @Param({"none", "prometheus"})
+    private String registry;
+
+    private JwtAuthorizationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private String alreadyFilteredAttribute;
+
+    @Setup
+    public void setUp() {
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(SECRET, new VerifiedTokenCache(true, 10_000), false);
+        String token = jwtTokenProvider.generateJwtToken(new UserPrinciple(BenchmarkUsers.user("benchmark", ROLE_SUPER_ADMIN)));
+        filter = new JwtAuthorizationFilter(jwtTokenProvider, meterRegistry());
+        request = new MockHttpServletRequest("GET", "/user/list");
+        request.addHeader(AUTHORIZATION, TOKEN_PREFIX + token);
+        response = new MockHttpServletResponse();
+        alreadyFilteredAttribute = JwtAuthorizationFilter.class.getName() + ".FILTERED";
+    }
+
+    // same histogram setup as application.yml, the buckets are what makes a prometheus timer costlier than a counter
+    private MeterRegistry meterRegistry() {
+        if ("none".equals(registry)) {
+            return new CompositeMeterRegistry();
+        }
+        PrometheusMeterRegistry prometheusMeterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        prometheusMeterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        });
+        return prometheusMeterRegistry;
+    }
+
+    @Benchmark
+    public Object doFilter() throws ServletException, IOException {
+        MockFilterChain filterChain = new MockFilterChain();
+        filter.doFilter(request, response, filterChain);
+        request.removeAttribute(alreadyFilteredAttribute);
+        SecurityContextHolder.clearContext();
+        return filterChain.getRequest();
+    }
+}
@@ -0,0 +1,50 @@
+package com.supportportal.benchmark;
+
+import com.supportportal.entity.UserPrinciple;
+import com.supportportal.security.JwtTokenProvider;
+import com.supportportal.security.VerifiedToken;
+import com.supportportal.security.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.supportportal.security.enumeration.Role.ROLE_SUPER_ADMIN;
+
+// token issue at login and the verification path JwtAuthorizationFilter runs on every request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+
+    @Param({"false", "true"})
+    private boolean cacheEnabled;
+
+    @Param({"false", "true"})
+    private boolean compactAuthorities;
+
+    private JwtTokenProvider jwtTokenProvider;
+    private UserPrinciple userPrinciple;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTokenProvider = new JwtTokenProvider(SECRET, new VerifiedTokenCache(cacheEnabled, 10_000), compactAuthorities);
+        userPrinciple = new UserPrinciple(BenchmarkUsers.user("benchmark", ROLE_SUPER_ADMIN));
+        token = jwtTokenProvider.generateJwtToken(userPrinciple);
+    }
+
+    @Benchmark
+    public String generateJwtToken() {
+        return jwtTokenProvider.generateJwtToken(userPrinciple);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyToken() {
+        return jwtTokenProvider.verifyToken(token);
+    }
+}
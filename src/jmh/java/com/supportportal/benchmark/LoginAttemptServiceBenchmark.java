@@ -0,0 +1,50 @@
+package com.supportportal.benchmark;
+
+import com.supportportal.service.LoginAttemptService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// failed logins and lockout checks racing on a shared set of usernames
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginAttemptServiceBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int usernameCount;
+
+    private LoginAttemptService loginAttemptService;
+    private String[] usernames;
+
+    @Setup
+    public void setUp() {
+        loginAttemptService = new LoginAttemptService(100_000);
+        usernames = new String[usernameCount];
+        for (int i = 0; i < usernameCount; i++) {
+            usernames[i] = "user" + i;
+        }
+    }
+
+    private String nextUsername() {
+        return usernames[ThreadLocalRandom.current().nextInt(usernames.length)];
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public void addUserToCache() {
+        loginAttemptService.addUserToCache(nextUsername());
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public boolean hasExceededMaxAttempt() {
+        return loginAttemptService.hasExceededMaxAttempt(nextUsername());
+    }
+}
@@ -0,0 +1,32 @@
+package com.supportportal.benchmark;
+
+import com.supportportal.entity.UserPrinciple;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static com.supportportal.security.enumeration.Role.ROLE_SUPER_ADMIN;
+
+// called for every token issued and by every authorization decision on the principal
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserPrincipleBenchmark {
+
+    private UserPrinciple userPrinciple;
+
+    @Setup
+    public void setUp() {
+        userPrinciple = new UserPrinciple(BenchmarkUsers.user("benchmark", ROLE_SUPER_ADMIN));
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return userPrinciple.getAuthorities();
+    }
+}
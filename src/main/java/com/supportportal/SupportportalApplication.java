@@ -1,14 +1,19 @@
 package com.supportportal;
 
+import com.supportportal.security.BoundedPasswordEncoder;
+import com.supportportal.security.CalibratedBCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import java.io.File;
 
 import static com.supportportal.utility.constants.FileConstant.USER_FOLDER;
 
+@EnableScheduling
 @SpringBootApplication
 public class SupportportalApplication {
 
@@ -17,8 +22,27 @@ public class SupportportalApplication {
 		new File(USER_FOLDER).mkdirs();
 	}
 
+	// cost is measured at startup unless fixed by supportportal.password.strength,
+	// register, addNewUser, resetPassword and login re-hashes all use this one bean
 	@Bean
-	public BCryptPasswordEncoder bCryptPasswordEncoder(){
-		return new BCryptPasswordEncoder();
+	public BCryptPasswordEncoder bCryptPasswordEncoder(@Value("${supportportal.password.strength:0}") int strength,
+													   @Value("${supportportal.password.latency-budget-ms:50}") long latencyBudgetMillis,
+													   @Value("${supportportal.password.min-strength:10}") int minStrength,
+													   @Value("${supportportal.password.max-strength:14}") int maxStrength){
+		if (strength > 0) {
+			return new CalibratedBCryptPasswordEncoder(strength);
+		}
+		return CalibratedBCryptPasswordEncoder.calibrate(latencyBudgetMillis, minStrength, maxStrength);
+	}
+
+	@Bean
+	public BoundedPasswordEncoder loginPasswordEncoder(BCryptPasswordEncoder bCryptPasswordEncoder,
+													   @Value("${supportportal.password-check.pool-size:0}") int poolSize,
+													   @Value("${supportportal.password-check.queue-capacity:64}") int queueCapacity,
+													   @Value("${supportportal.password-check.max-queue-wait-ms:500}") long maxQueueWaitMillis,
+													   @Value("${supportportal.password-check.retry-after-seconds:1}") long retryAfterSeconds) {
+		// defaults to one hashing thread per core
+		int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+		return new BoundedPasswordEncoder(bCryptPasswordEncoder, threads, queueCapacity, maxQueueWaitMillis, retryAfterSeconds);
 	}
 }
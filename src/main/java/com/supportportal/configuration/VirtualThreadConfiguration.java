@@ -0,0 +1,30 @@
+package com.supportportal.configuration;
+
+import com.supportportal.utility.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/* supportportal.threads.virtual runs every request on its own virtual thread instead of Tomcat's
+* pool of server.tomcat.threads.max platform threads. Concurrency is then bounded by
+* server.tomcat.max-connections and, for anything touching the database, by the Hikari pool.
+* BCrypt, image resizing and import hashing keep their platform pools, they are CPU bound and
+* sized to the cores on purpose. On a JVM older than 21 the setting is ignored with a warning */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "supportportal.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        if (!VirtualThreads.isSupported()) {
+            log.warn("supportportal.threads.virtual needs Java 21, serving requests on platform threads on " + Runtime.version());
+            return protocolHandler -> { };
+        }
+        log.info("Serving requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-virtual-"));
+    }
+}
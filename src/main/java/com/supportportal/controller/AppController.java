@@ -2,30 +2,59 @@ package com.supportportal.controller;
 
 import com.supportportal.entity.User;
 import com.supportportal.entity.UserPrinciple;
+import com.supportportal.entity.dto.BulkUpdateResult;
+import com.supportportal.entity.dto.BulkUserUpdate;
 import com.supportportal.entity.dto.UserDTO;
+import com.supportportal.entity.dto.UserPage;
+import com.supportportal.entity.enumeration.ExportFormat;
+import com.supportportal.entity.enumeration.UserSortField;
 import com.supportportal.exception.ExceptionHandling;
 import com.supportportal.exception.domain.EmailExistException;
+import com.supportportal.exception.domain.InvalidBulkUpdateException;
+import com.supportportal.exception.domain.InvalidCursorException;
+import com.supportportal.exception.domain.LoginCapacityExceededException;
 import com.supportportal.exception.domain.UserNotFoundException;
 import com.supportportal.exception.domain.UsernameExistException;
+import com.supportportal.security.AuthoritySet;
 import com.supportportal.security.JwtTokenProvider;
+import com.supportportal.service.UserBulkService;
+import com.supportportal.service.UserExportService;
+import com.supportportal.service.UserImportService;
 import com.supportportal.service.interfaces.IUserService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import javax.mail.MessagingException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
+import static com.supportportal.utility.constants.MetricConstant.LOGIN_TIMER;
+import static com.supportportal.utility.constants.MetricConstant.OUTCOME_TAG;
 import static com.supportportal.utility.constants.SecurityConstant.JWT_TOKEN_HEADER;
 
 @RestController
 @RequestMapping(path = {"/","/supportPortal"})
 public class AppController extends ExceptionHandling {
 
+    private static final String GZIP_ENCODING = "gzip";
+    private static final int EXPORT_GZIP_BUFFER_SIZE = 16 * 1024;
+
     @Autowired
     IUserService userService;
 
@@ -35,6 +64,18 @@ public class AppController extends ExceptionHandling {
     @Autowired
     private JwtTokenProvider jwtTokenProvider;
 
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserBulkService userBulkService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @GetMapping(value = "/home")
     public String home(){
         return "Home Page";
@@ -49,12 +90,116 @@ public class AppController extends ExceptionHandling {
 
     @PostMapping(value = "/login")
     public ResponseEntity<User> login(@RequestBody UserDTO userDTO){
-        authenticate(userDTO.getUsername(),userDTO.getPassword());
-        User authenticatedUser = userService.findByUsername(userDTO.getUsername());
-        // this will allow generation of JWT and its headers to be passed to UI
-        UserPrinciple userPrinciple = new UserPrinciple(authenticatedUser);
-        HttpHeaders jwtHeaders = getJwtHeader(userPrinciple);
-        return new ResponseEntity<>(authenticatedUser, jwtHeaders, HttpStatus.OK);
+        long startedAt = System.nanoTime();
+        String outcome = "error";
+        try {
+            // principal loaded by the AuthenticationManager is reused, no second lookup of the user
+            UserPrinciple userPrinciple = authenticate(userDTO.getUsername(),userDTO.getPassword());
+            // this will allow generation of JWT and its headers to be passed to UI
+            HttpHeaders jwtHeaders = getJwtHeader(userPrinciple);
+            outcome = "success";
+            return new ResponseEntity<>(userPrinciple.getUser(), jwtHeaders, HttpStatus.OK);
+        } catch (BadCredentialsException e) {
+            outcome = "bad_credentials";
+            throw e;
+        } catch (LockedException e) {
+            outcome = "locked";
+            throw e;
+        } catch (DisabledException e) {
+            outcome = "disabled";
+            throw e;
+        } catch (LoginCapacityExceededException e) {
+            outcome = "overloaded";
+            throw e;
+        } finally {
+            // BCrypt and repository time are recorded by their own meters, this is the whole request
+            meterRegistry.timer(LOGIN_TIMER, OUTCOME_TAG, outcome).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // keyset paged listing, pass nextCursor from the previous page to continue
+    @GetMapping(value = "/users")
+    @PreAuthorize("hasAuthority('user:read')")
+    public ResponseEntity<UserPage> getUsers(@RequestParam(value = "cursor", required = false) String cursor,
+                                             @RequestParam(value = "size", defaultValue = "0") int size,
+                                             @RequestParam(value = "sort", defaultValue = "ID") UserSortField sort) throws InvalidCursorException {
+        return new ResponseEntity<>(userService.getUsers(cursor, size, sort), HttpStatus.OK);
+    }
+
+    // streams every user as NDJSON or CSV, gzipped on the fly when the client accepts it
+    @GetMapping(value = "/users/export")
+    @PreAuthorize("hasAuthority('user:read')")
+    public void exportUsers(@RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format,
+                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                            HttpServletResponse response) throws IOException {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + format.getExtension() + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING);
+        }
+        try (OutputStream outputStream = gzip ? new GZIPOutputStream(response.getOutputStream(), EXPORT_GZIP_BUFFER_SIZE)
+                : response.getOutputStream()) {
+            userExportService.exportUsers(outputStream, format);
+        }
+    }
+
+    // gzip when the client lists gzip, or else *, with a q above 0. A malformed q counts as a refusal
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            boolean accepted = qualityOf(parameters) > 0;
+            if (GZIP_ENCODING.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                return accepted;
+            }
+            if ("*".equals(name)) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double qualityOf(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // creates users from an NDJSON or CSV body, answers with an NDJSON report of progress and failed rows
+    @PostMapping(value = "/users/import")
+    @PreAuthorize("hasAuthority('user:create')")
+    public void importUsers(@RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(ExportFormat.NDJSON.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        try (InputStream inputStream = request.getInputStream()) {
+            userImportService.importUsers(inputStream, format, response.getOutputStream());
+        }
+    }
+
+    // lock, unlock, (de)activate or re-role users selected by ids, usernames or current role.
+    // re-roling also needs user:delete, the further checks against the caller are in UserBulkService
+    @PostMapping(value = "/users/bulk")
+    @PreAuthorize("hasAuthority('user:update')")
+    public ResponseEntity<BulkUpdateResult> bulkUpdate(@RequestBody BulkUserUpdate bulkUserUpdate, Authentication authentication)
+            throws InvalidBulkUpdateException {
+        return new ResponseEntity<>(userBulkService.update(bulkUserUpdate, authentication.getName(),
+                AuthoritySet.ofGranted(authentication.getAuthorities())), HttpStatus.OK);
     }
 
     private HttpHeaders getJwtHeader(UserPrinciple user) {
@@ -63,8 +208,10 @@ public class AppController extends ExceptionHandling {
         return headers;
     }
 
-    private void authenticate(String username, String password) {
+    private UserPrinciple authenticate(String username, String password) {
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(username, password);
-        authenticationManager.authenticate(authenticationToken);
+        Authentication authentication = authenticationManager.authenticate(authenticationToken);
+        // UserService.loadUserByUsername always hands back a UserPrinciple
+        return (UserPrinciple) authentication.getPrincipal();
     }
 }
@@ -0,0 +1,171 @@
+package com.supportportal.controller;
+
+import com.supportportal.service.ImageVariantService;
+import com.supportportal.service.ProfileImageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+import static com.supportportal.utility.constants.FileConstant.*;
+
+/* Serves profile images straight from the image storage. The bytes never pass through the heap:
+* tomcat sends the file with sendfile when the connector supports it, otherwise the file
+* channel transfers into the response channel. Conditional (ETag / Last-Modified) and
+* single range requests are answered without touching the file content. Only content-addressed
+* files have a strong ETag; the size and mtime of any other file are a weak validator, which
+* If-Range never matches, so a range of a replaced file cannot be spliced onto the old one. A size parameter
+* selects the smallest downscaled variant that covers it, falling back to the original */
+@Slf4j
+@RestController
+public class ProfileImageController {
+
+    private static final String WEAK_ETAG_PREFIX = "W/";
+
+    private final ProfileImageService profileImageService;
+    private final ImageVariantService imageVariantService;
+
+    public ProfileImageController(ProfileImageService profileImageService, ImageVariantService imageVariantService) {
+        this.profileImageService = profileImageService;
+        this.imageVariantService = imageVariantService;
+    }
+
+    // current image of a user, may change so clients revalidate with the ETag. size picks the smallest variant covering it
+    @GetMapping(USER_IMAGE_PATH + "{username}")
+    public void getProfileImage(@PathVariable("username") String username, @RequestParam(value = "size", required = false) Integer size,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(bestFit(profileImageService.currentImage(username), size), false, request, response);
+    }
+
+    @GetMapping(USER_IMAGE_PATH + "{username}/{fileName:.+}")
+    public void getProfileImage(@PathVariable("username") String username, @PathVariable("fileName") String fileName,
+                                @RequestParam(value = "size", required = false) Integer size,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path image = bestFit(resolve(username, fileName), size);
+        // the served name, a variant of a content-addressed image is content-addressed too
+        String servedName = image == null ? fileName : image.getFileName().toString();
+        serve(image, servedName.matches(CONTENT_ADDRESSED_FILE_NAME) || servedName.matches(IMAGE_VARIANT_FILE_NAME),
+                request, response);
+    }
+
+    // users without an uploaded image get a generated one
+    @GetMapping(DEFAULT_USER_IMAGE_PATH + "{username}")
+    public void getTemporaryProfileImage(@PathVariable("username") String username, HttpServletResponse response) throws IOException {
+        response.sendRedirect(TEMP_PROFILE_IMAGE_BASE_URL + username);
+    }
+
+    private Path bestFit(Path image, Integer size) {
+        return image == null || size == null || !image.getFileName().toString().matches(CONTENT_ADDRESSED_FILE_NAME)
+                ? image : imageVariantService.bestFit(image, size);
+    }
+
+    // null for anything that would leave the user's folder
+    private Path resolve(String username, String fileName) {
+        Path userFolder = profileImageService.userFolder(username);
+        if (userFolder == null) {
+            return null;
+        }
+        Path file = userFolder.resolve(fileName).normalize();
+        return userFolder.equals(file.getParent()) ? file : null;
+    }
+
+    private void serve(Path file, boolean immutable, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (file == null || !Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String fileName = file.getFileName().toString();
+        // a content-addressed name is the digest itself, otherwise size and mtime only approximate the version
+        String eTag = immutable ? "\"" + fileName.substring(0, fileName.indexOf(DOT)) + "\""
+                : WEAK_ETAG_PREFIX + "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES_RANGE_UNIT);
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, eTag);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            if (start >= length) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_RANGE_UNIT + " */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            end = range.getRangeEnd(length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_RANGE_UNIT + " " + start + "-" + end + "/" + length);
+        }
+        long contentLength = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+            // exclusive
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, end + 1);
+            return;
+        }
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel responseChannel = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = contentLength;
+            while (remaining > 0) {
+                long transferred = fileChannel.transferTo(position, remaining, responseChannel);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    // a single satisfiable range, anything else (none, several, stale or weak If-Range) gets the full file
+    private HttpRange requestedRange(HttpServletRequest request, String eTag) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range compares strongly, a date or a weak validator never matches
+        if (ifRange != null && (eTag.startsWith(WEAK_ETAG_PREFIX) || !ifRange.equals(eTag))) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed range header: " + rangeHeader);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.supportportal.entity;
+
+import com.supportportal.entity.enumeration.EmailStatus;
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+import static com.supportportal.utility.constants.Constants.EMAIL_OUTBOX_ID_SEQUENCE;
+import static com.supportportal.utility.constants.Constants.ID_ALLOCATION_SIZE;
+
+// one queued email, written in the transaction of the change that caused it and drained by EmailDispatcher
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "email_outbox", indexes = @Index(name = "ix_email_outbox_status_next_attempt", columnList = "status, nextAttemptAt"))
+public class EmailOutbox implements Serializable {
+    @Id
+    @Column(name = "id", nullable = false, updatable = false)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = EMAIL_OUTBOX_ID_SEQUENCE)
+    @SequenceGenerator(name = EMAIL_OUTBOX_ID_SEQUENCE, sequenceName = EMAIL_OUTBOX_ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
+    private Long id;
+    private String recipient;
+    private String cc;
+    private String subject;
+    // encrypted by EmailBodyCipher as it can hold a generated password, cleared once the message is given up on
+    @Column(columnDefinition = "text")
+    private String body;
+    @Enumerated(EnumType.STRING)
+    private EmailStatus status;
+    private int attempts;
+    private Date createdAt;
+    private Date nextAttemptAt;
+    private String lastError;
+}
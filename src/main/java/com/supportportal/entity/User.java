@@ -1,5 +1,7 @@
 package com.supportportal.entity;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.supportportal.security.enumeration.Role;
 import lombok.*;
 
 import javax.persistence.*;
@@ -7,22 +9,31 @@ import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
 
+import static com.supportportal.utility.constants.Constants.*;
+
 @Entity
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = USERNAME_UNIQUE_CONSTRAINT, columnNames = "username"),
+        @UniqueConstraint(name = EMAIL_UNIQUE_CONSTRAINT, columnNames = "email")
+})
 public class User implements Serializable {
     @Id
     @Column(name = "id", nullable = false, updatable = false)
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled sequence, Hibernate hands out ALLOCATION_SIZE ids per round trip and can batch the INSERTs
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = USER_ID_SEQUENCE)
+    @SequenceGenerator(name = USER_ID_SEQUENCE, sequenceName = USER_ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     private String userId;
     private String firstName;
     private String lastName;
     private String username;
+    // the hash never leaves the server, every endpoint that returns users serializes this entity
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
     private String email;
     private String profileImageUrl;
@@ -30,9 +41,12 @@ public class User implements Serializable {
     private Date lastLoginDateDisplay;
     private Date joinDate;
     private String role; //ROLE_USER{ read, edit }, ROLE_ADMIN {delete}
-    @Column
-    @ElementCollection(targetClass=String.class)
-    private List<String> authorities;
     private boolean isActive;
     private boolean isNotLocked;
+
+    // derived from role instead of the old user_authorities element collection,
+    // so loading a user never costs a second query. Not a mapped attribute (field access)
+    public List<String> getAuthorities() {
+        return role == null ? List.of() : Role.valueOf(role).getAuthorities();
+    }
 }
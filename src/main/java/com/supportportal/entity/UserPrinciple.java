@@ -1,11 +1,12 @@
 package com.supportportal.entity;
 
+import com.supportportal.security.AuthoritySet;
+import com.supportportal.security.enumeration.Permission;
+import com.supportportal.security.enumeration.Role;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
-import java.util.stream.Collectors;
 
 public class UserPrinciple implements UserDetails {
 
@@ -15,12 +16,23 @@ public class UserPrinciple implements UserDetails {
         this.user = user;
     }
 
+    // the user loaded during authentication, lets callers reuse it instead of querying again
+    public User getUser() {
+        return this.user;
+    }
+
+    // interned per role, nothing is allocated per call
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return this.user.getAuthorities()
-                .stream()
-                    .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+        return getAuthoritySet().getGrantedAuthorities();
+    }
+
+    public AuthoritySet getAuthoritySet() {
+        return this.user.getRole() == null ? AuthoritySet.EMPTY : Role.valueOf(this.user.getRole()).getAuthoritySet();
+    }
+
+    public boolean hasPermission(Permission permission) {
+        return getAuthoritySet().has(permission);
     }
 
     @Override
@@ -0,0 +1,12 @@
+package com.supportportal.entity.dto;
+
+import com.supportportal.entity.enumeration.BulkOperation;
+import lombok.*;
+
+@Getter
+@AllArgsConstructor
+public class BulkUpdateResult {
+    private BulkOperation operation;
+    // rows the UPDATEs reported, users already in the target state are counted too
+    private int affected;
+}
@@ -0,0 +1,20 @@
+package com.supportportal.entity.dto;
+
+import com.supportportal.entity.enumeration.BulkOperation;
+import lombok.*;
+
+import java.util.List;
+
+// selects users by ids, by usernames or by their current role, exactly one of the three
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserUpdate {
+    private BulkOperation operation;
+    private List<Long> ids;
+    private List<String> usernames;
+    private String currentRole;
+    // target role of CHANGE_ROLE
+    private String role;
+}
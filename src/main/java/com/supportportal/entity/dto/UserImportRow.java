@@ -0,0 +1,17 @@
+package com.supportportal.entity.dto;
+
+import lombok.*;
+
+// one line of a bulk import, same column names as the export
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportRow {
+    private String firstName;
+    private String lastName;
+    private String username;
+    private String email;
+    // ROLE_USER when empty
+    private String role;
+}
@@ -0,0 +1,15 @@
+package com.supportportal.entity.dto;
+
+import com.supportportal.entity.User;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Builder
+@AllArgsConstructor
+public class UserPage {
+    private List<User> users;
+    // opaque, pass back as cursor to get the next page. null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,10 @@
+package com.supportportal.entity.enumeration;
+
+public enum BulkOperation {
+    LOCK,
+    UNLOCK,
+    ACTIVATE,
+    DEACTIVATE,
+    // needs BulkUserUpdate.role, authorities follow from the role
+    CHANGE_ROLE
+}
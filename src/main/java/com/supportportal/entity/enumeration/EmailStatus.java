@@ -0,0 +1,7 @@
+package com.supportportal.entity.enumeration;
+
+// sent messages are deleted from the outbox, only these two states are ever stored
+public enum EmailStatus {
+    PENDING,
+    FAILED
+}
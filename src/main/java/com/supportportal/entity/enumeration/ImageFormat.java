@@ -0,0 +1,43 @@
+package com.supportportal.entity.enumeration;
+
+import java.util.Arrays;
+
+import static org.springframework.util.MimeTypeUtils.*;
+
+// accepted profile image formats, recognised by their leading magic bytes and never by the client's content type
+public enum ImageFormat {
+    JPEG("jpg", IMAGE_JPEG_VALUE, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    PNG("png", IMAGE_PNG_VALUE, new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+    GIF("gif", IMAGE_GIF_VALUE, new byte[]{'G', 'I', 'F', '8'});
+
+    public static final int MAGIC_LENGTH = 8;
+
+    private final String extension;
+    private final String contentType;
+    private final byte[] magic;
+
+    ImageFormat(String extension, String contentType, byte[] magic) {
+        this.extension = extension;
+        this.contentType = contentType;
+        this.magic = magic;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    // null when the header matches none of the formats
+    public static ImageFormat sniff(byte[] header, int length) {
+        for (ImageFormat format : values()) {
+            if (length >= format.magic.length
+                    && Arrays.equals(header, 0, format.magic.length, format.magic, 0, format.magic.length)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
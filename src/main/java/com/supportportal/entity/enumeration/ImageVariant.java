@@ -0,0 +1,22 @@
+package com.supportportal.entity.enumeration;
+
+// downscaled copies of a profile image, bounded to size x size and stored as <sha-256>-<size>.<ext>
+public enum ImageVariant {
+    THUMBNAIL(40),
+    SMALL(128),
+    MEDIUM(256);
+
+    private final int size;
+
+    ImageVariant(int size) {
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String fileName(String hash, String extension) {
+        return hash + "-" + size + "." + extension;
+    }
+}
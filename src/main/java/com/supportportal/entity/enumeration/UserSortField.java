@@ -0,0 +1,8 @@
+package com.supportportal.entity.enumeration;
+
+// columns a user listing can be sorted on, each one is backed by an index (primary key or unique constraint)
+public enum UserSortField {
+    ID,
+    USERNAME,
+    EMAIL
+}
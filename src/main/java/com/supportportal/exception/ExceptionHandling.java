@@ -5,6 +5,7 @@ import com.supportportal.entity.dto.HttpResponse;
 import com.supportportal.exception.domain.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.web.servlet.error.ErrorController;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +17,7 @@ import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import javax.persistence.NoResultException;
 import java.io.IOException;
@@ -72,6 +74,24 @@ public class ExceptionHandling implements ErrorController {
         return createHttpResponse(BAD_REQUEST, exception.getMessage());
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<HttpResponse> invalidCursorException(InvalidCursorException exception) {
+        return createHttpResponse(BAD_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidBulkUpdateException.class)
+    public ResponseEntity<HttpResponse> invalidBulkUpdateException(InvalidBulkUpdateException exception) {
+        return createHttpResponse(BAD_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler(LoginCapacityExceededException.class)
+    public ResponseEntity<HttpResponse> loginCapacityExceededException(LoginCapacityExceededException exception) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()));
+        return new ResponseEntity<>(new HttpResponse(SERVICE_UNAVAILABLE.value(), SERVICE_UNAVAILABLE,
+                SERVICE_UNAVAILABLE.getReasonPhrase().toUpperCase(), exception.getMessage()), headers, SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(HttpRequestMethodNotSupportedException.class)
     public ResponseEntity<HttpResponse> methodNotSupportedException(HttpRequestMethodNotSupportedException exception) {
         HttpMethod supportedMethod = Objects.requireNonNull(exception.getSupportedHttpMethods()).iterator().next();
@@ -90,6 +110,19 @@ public class ExceptionHandling implements ErrorController {
         return createHttpResponse(BAD_REQUEST, exception.getMessage());
     }
 
+    @ExceptionHandler(ImageTooLargeException.class)
+    public ResponseEntity<HttpResponse> imageTooLargeException(ImageTooLargeException exception) {
+        log.error(exception.getMessage());
+        return createHttpResponse(PAYLOAD_TOO_LARGE, exception.getMessage());
+    }
+
+    // the multipart limit is hit before our own streaming cap sees the upload
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<HttpResponse> maxUploadSizeExceededException(MaxUploadSizeExceededException exception) {
+        log.error(exception.getMessage());
+        return createHttpResponse(PAYLOAD_TOO_LARGE, IMAGE_UPLOAD_TOO_LARGE);
+    }
+
     @ExceptionHandler(NoResultException.class)
     public ResponseEntity<HttpResponse> notFoundException(NoResultException exception) {
         log.error(exception.getMessage());
@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class ImageTooLargeException extends Exception {
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class InvalidBulkUpdateException extends Exception {
+    public InvalidBulkUpdateException(String message) {
+        super(message);
+    }
+}
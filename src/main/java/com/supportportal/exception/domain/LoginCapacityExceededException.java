@@ -0,0 +1,16 @@
+package com.supportportal.exception.domain;
+
+// unchecked, as it is thrown from PasswordEncoder.matches inside the AuthenticationManager
+public class LoginCapacityExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginCapacityExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
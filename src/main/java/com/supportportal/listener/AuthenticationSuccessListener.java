@@ -1,7 +1,7 @@
 package com.supportportal.listener;
 
-import com.supportportal.entity.User;
 import com.supportportal.entity.UserPrinciple;
+import com.supportportal.service.LastLoginRecorder;
 import com.supportportal.service.LoginAttemptService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
@@ -11,10 +11,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class AuthenticationSuccessListener {
     private final LoginAttemptService loginAttemptService;
+    private final LastLoginRecorder lastLoginRecorder;
 
     @Autowired
-    public AuthenticationSuccessListener(LoginAttemptService loginAttemptService) {
+    public AuthenticationSuccessListener(LoginAttemptService loginAttemptService, LastLoginRecorder lastLoginRecorder) {
         this.loginAttemptService = loginAttemptService;
+        this.lastLoginRecorder = lastLoginRecorder;
     }
 
     @EventListener
@@ -23,6 +25,8 @@ public class AuthenticationSuccessListener {
         if(principal instanceof UserPrinciple){
             UserPrinciple user = (UserPrinciple) event.getAuthentication().getPrincipal();
             loginAttemptService.evictUserFromCache(user.getUsername());
+            // only successful logins update the last login date, written behind in batches
+            lastLoginRecorder.recordLogin(user.getUsername());
         }
     }
 }
@@ -0,0 +1,132 @@
+package com.supportportal.metrics;
+
+import com.google.common.cache.CacheStats;
+import com.supportportal.security.BoundedPasswordEncoder;
+import com.supportportal.security.VerifiedTokenCache;
+import com.supportportal.service.EmailDispatcher;
+import com.supportportal.service.ImageVariantService;
+import com.supportportal.service.LoginAttemptService;
+import com.supportportal.service.UserLookupCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+import static com.supportportal.utility.constants.MetricConstant.*;
+
+/* Exposes the counters the components already keep as meters. Everything here is read at
+* scrape time from LongAdders and cache stats, nothing is added to the request path.
+* The timed paths (token verify, login, email send) register their own timers */
+@Component
+public class ApplicationMetrics implements MeterBinder {
+
+    private final BoundedPasswordEncoder loginPasswordEncoder;
+    private final LoginAttemptService loginAttemptService;
+    private final UserLookupCache userLookupCache;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final EmailDispatcher emailDispatcher;
+    private final ImageVariantService imageVariantService;
+
+    public ApplicationMetrics(BoundedPasswordEncoder loginPasswordEncoder, LoginAttemptService loginAttemptService,
+                              UserLookupCache userLookupCache, VerifiedTokenCache verifiedTokenCache,
+                              EmailDispatcher emailDispatcher, ImageVariantService imageVariantService) {
+        this.loginPasswordEncoder = loginPasswordEncoder;
+        this.loginAttemptService = loginAttemptService;
+        this.userLookupCache = userLookupCache;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.emailDispatcher = emailDispatcher;
+        this.imageVariantService = imageVariantService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindPasswordChecks(registry);
+        bindLoginAttempts(registry);
+        bindCaches(registry);
+        bindEmail(registry);
+        bindImageVariants(registry);
+    }
+
+    // BCrypt time and queue wait of /login, both counted once per check
+    private void bindPasswordChecks(MeterRegistry registry) {
+        FunctionTimer.builder(PASSWORD_HASH_TIMER, loginPasswordEncoder,
+                        BoundedPasswordEncoder::getMatchCount, BoundedPasswordEncoder::getTotalHashNanos, TimeUnit.NANOSECONDS)
+                .description("BCrypt match time of login password checks")
+                .register(registry);
+        FunctionTimer.builder(PASSWORD_QUEUE_WAIT_TIMER, loginPasswordEncoder,
+                        BoundedPasswordEncoder::getMatchCount, BoundedPasswordEncoder::getTotalQueueWaitNanos, TimeUnit.NANOSECONDS)
+                .description("Time login password checks waited for a hashing thread")
+                .register(registry);
+        Gauge.builder(PASSWORD_QUEUE_DEPTH, loginPasswordEncoder, BoundedPasswordEncoder::getQueueDepth)
+                .description("Password checks waiting for a hashing thread")
+                .register(registry);
+        FunctionCounter.builder(PASSWORD_REJECTED, loginPasswordEncoder, BoundedPasswordEncoder::getRejectedCount)
+                .description("Logins answered 503 because the password check pool was saturated")
+                .register(registry);
+    }
+
+    private void bindLoginAttempts(MeterRegistry registry) {
+        Gauge.builder(LOGIN_ATTEMPT_USERS, loginAttemptService, LoginAttemptService::size)
+                .description("Usernames with failed login attempts inside the window")
+                .register(registry);
+        Gauge.builder(LOGIN_ATTEMPT_MEMORY, loginAttemptService, LoginAttemptService::estimatedMemoryBytes)
+                .description("Estimated heap held by the failed login attempt windows")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        FunctionCounter.builder(LOCKOUTS, loginAttemptService, LoginAttemptService::getLockoutCount)
+                .description("Accounts locked after too many failed logins")
+                .register(registry);
+    }
+
+    /* one set of meters per cache, the cache tag only takes these fixed names. Meters hold their
+    * state object weakly, so it is the cache bean itself and never a lambda or method reference
+    * that nothing else keeps alive */
+    private void bindCaches(MeterRegistry registry) {
+        bindCache(registry, "user-username", userLookupCache, UserLookupCache::usernameCacheSize, UserLookupCache::usernameStats);
+        bindCache(registry, "user-email", userLookupCache, UserLookupCache::emailCacheSize, UserLookupCache::emailStats);
+        bindCache(registry, "verified-token", verifiedTokenCache, VerifiedTokenCache::size, VerifiedTokenCache::stats);
+    }
+
+    private <T> void bindCache(MeterRegistry registry, String cache, T target, ToDoubleFunction<T> size, Function<T, CacheStats> stats) {
+        Gauge.builder(CACHE_SIZE, target, size)
+                .tag(CACHE_TAG, cache)
+                .register(registry);
+        FunctionCounter.builder(CACHE_HITS, target, t -> stats.apply(t).hitCount())
+                .tag(CACHE_TAG, cache)
+                .register(registry);
+        FunctionCounter.builder(CACHE_MISSES, target, t -> stats.apply(t).missCount())
+                .tag(CACHE_TAG, cache)
+                .register(registry);
+        FunctionCounter.builder(CACHE_EVICTIONS, target, t -> stats.apply(t).evictionCount())
+                .tag(CACHE_TAG, cache)
+                .register(registry);
+    }
+
+    private void bindEmail(MeterRegistry registry) {
+        Gauge.builder(EMAIL_BACKLOG, emailDispatcher, EmailDispatcher::getBacklog)
+                .description("Outbox emails waiting to be sent")
+                .register(registry);
+        FunctionCounter.builder(EMAIL_ABANDONED, emailDispatcher, EmailDispatcher::getAbandonedCount)
+                .description("Outbox emails given up after the last attempt")
+                .register(registry);
+        FunctionCounter.builder(EMAIL_CONNECTIONS, emailDispatcher, EmailDispatcher::getConnectionCount)
+                .description("SMTP connections opened by the dispatcher")
+                .register(registry);
+    }
+
+    private void bindImageVariants(MeterRegistry registry) {
+        Gauge.builder(IMAGE_VARIANT_QUEUE_DEPTH, imageVariantService, ImageVariantService::getQueueDepth)
+                .register(registry);
+        FunctionCounter.builder(IMAGE_VARIANTS_GENERATED, imageVariantService, ImageVariantService::getGeneratedCount)
+                .register(registry);
+        FunctionCounter.builder(IMAGE_VARIANTS_REJECTED, imageVariantService, ImageVariantService::getRejectedCount)
+                .register(registry);
+    }
+}
@@ -0,0 +1,86 @@
+package com.supportportal.metrics.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Starts a continuous flight recording with the JDK's default settings plus jfr/supportportal.jfc,
+* so the auth events sit next to GC, safepoint and monitor events. Only the last max-age is kept
+* on disk, it is written to the destination on shutdown or on demand with
+* jcmd <pid> JFR.dump name=supportportal filename=auth.jfr */
+@Slf4j
+@Component
+public class FlightRecording {
+
+    private static final String RECORDING_NAME = "supportportal";
+    private static final String SETTINGS = "jfr/supportportal.jfc";
+
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final Path destination;
+    private Recording recording;
+
+    public FlightRecording(@Value("${supportportal.jfr.enabled:false}") boolean enabled,
+                           @Value("${supportportal.jfr.max-age-minutes:30}") long maxAgeMinutes,
+                           @Value("${supportportal.jfr.destination:supportportal.jfr}") String destination) {
+        this.enabled = enabled;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+        this.destination = Paths.get(destination);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void onApplicationReady() {
+        if (!enabled || recording != null) {
+            return;
+        }
+        try {
+            Recording started = new Recording(settings());
+            started.setName(RECORDING_NAME);
+            started.setToDisk(true);
+            started.setMaxAge(maxAge);
+            started.setDestination(destination);
+            started.start();
+            recording = started;
+            log.info("Flight recording started, dumped to " + destination.toAbsolutePath() + " on shutdown");
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            // JFR missing or locked down, the application runs on without it
+            log.error("Could not start flight recording: " + e.getMessage());
+        }
+    }
+
+    // ours win where both define an event
+    private Map<String, String> settings() throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        try (Reader reader = new InputStreamReader(new ClassPathResource(SETTINGS).getInputStream(), StandardCharsets.UTF_8)) {
+            settings.putAll(Configuration.create(reader).getSettings());
+        }
+        return settings;
+    }
+
+    // stopping writes the recording to its destination
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording != null) {
+            recording.stop();
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.supportportal.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.supportportal.ImageWrite")
+@Label("Image Write")
+@Category({"Support Portal", "Images"})
+@Description("Profile image upload streamed to the image storage, hashing and the final rename included")
+@StackTrace(false)
+public class ImageWriteEvent extends jdk.jfr.Event {
+
+    @Label("Size")
+    @DataAmount
+    private long size;
+
+    @Label("Format")
+    @Description("Detected from the magic bytes, empty when the upload was rejected")
+    private String format;
+
+    @Label("Deduplicated")
+    @Description("The same content was already stored, nothing was moved")
+    private boolean deduplicated;
+
+    public void complete(long size, String format, boolean deduplicated) {
+        end();
+        if (shouldCommit()) {
+            this.size = size;
+            this.format = format;
+            this.deduplicated = deduplicated;
+            commit();
+        }
+    }
+}
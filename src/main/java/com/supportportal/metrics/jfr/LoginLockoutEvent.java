@@ -0,0 +1,28 @@
+package com.supportportal.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// instant event, the account itself is left out on purpose
+@Name("com.supportportal.LoginLockout")
+@Label("Login Lockout")
+@Category({"Support Portal", "Authentication"})
+@Description("An account was locked after too many failed logins")
+@StackTrace(false)
+public class LoginLockoutEvent extends jdk.jfr.Event {
+
+    @Label("Tracked Users")
+    @Description("Usernames with failed attempts inside the window at the time of the lockout")
+    private int trackedUsers;
+
+    public static void emit(int trackedUsers) {
+        LoginLockoutEvent event = new LoginLockoutEvent();
+        if (event.shouldCommit()) {
+            event.trackedUsers = trackedUsers;
+            event.commit();
+        }
+    }
+}
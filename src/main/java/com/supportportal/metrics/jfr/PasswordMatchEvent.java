@@ -0,0 +1,37 @@
+package com.supportportal.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.supportportal.PasswordMatch")
+@Label("Password Match")
+@Category({"Support Portal", "Authentication"})
+@Description("BCrypt check of a login on the password check pool, the duration is the hash alone")
+@StackTrace(false)
+public class PasswordMatchEvent extends jdk.jfr.Event {
+
+    @Label("Cost")
+    @Description("BCrypt cost of the stored hash, -1 when it is not a BCrypt hash")
+    private int cost;
+
+    @Label("Matched")
+    private boolean matched;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    private long queueWait;
+
+    public void complete(int cost, boolean matched, long queueWaitNanos) {
+        end();
+        if (shouldCommit()) {
+            this.cost = cost;
+            this.matched = matched;
+            this.queueWait = queueWaitNanos;
+            commit();
+        }
+    }
+}
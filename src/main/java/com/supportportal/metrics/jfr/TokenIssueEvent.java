@@ -0,0 +1,28 @@
+package com.supportportal.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.supportportal.TokenIssue")
+@Label("Token Issue")
+@Category({"Support Portal", "Authentication"})
+@StackTrace(false)
+public class TokenIssueEvent extends jdk.jfr.Event {
+
+    @Label("Compact Authorities")
+    private boolean compactAuthorities;
+
+    @Label("Authority Count")
+    private int authorityCount;
+
+    public void complete(boolean compactAuthorities, int authorityCount) {
+        end();
+        if (shouldCommit()) {
+            this.compactAuthorities = compactAuthorities;
+            this.authorityCount = authorityCount;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.supportportal.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.supportportal.TokenVerify")
+@Label("Token Verify")
+@Category({"Support Portal", "Authentication"})
+@Description("Bearer token check of JwtTokenProvider, cache hits included")
+@StackTrace(false)
+public class TokenVerifyEvent extends jdk.jfr.Event {
+
+    @Label("Cached")
+    @Description("Answered from the verified token cache without an HMAC check")
+    private boolean cached;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public void complete(boolean cached, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.cached = cached;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.supportportal.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.supportportal.UserLookup")
+@Label("User Lookup")
+@Category({"Support Portal", "Authentication"})
+@Description("loadUserByUsername, through UserLookupCache and the users table on a miss")
+@StackTrace(false)
+public class UserLookupEvent extends jdk.jfr.Event {
+
+    @Label("Found")
+    private boolean found;
+
+    @Label("Database Queried")
+    private boolean databaseQueried;
+
+    public void markDatabaseQueried() {
+        databaseQueried = true;
+    }
+
+    public void complete(boolean found) {
+        end();
+        if (shouldCommit()) {
+            this.found = found;
+            commit();
+        }
+    }
+}
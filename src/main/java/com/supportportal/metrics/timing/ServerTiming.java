@@ -0,0 +1,71 @@
+package com.supportportal.metrics.timing;
+
+import java.util.concurrent.TimeUnit;
+
+/* Phase timings of the sampled request running on the current thread. Unsampled requests
+* never get an instance, record() is then a single ThreadLocal read. A sampled request
+* allocates this object and its two arrays once, recording only adds into them.
+* Work handed to other threads (BCrypt pool, image variants, email outbox) is recorded
+* by the caller around the hand-off, so bcrypt includes the wait for a hashing thread */
+public final class ServerTiming {
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+    private static final TimingPhase[] PHASES = TimingPhase.values();
+
+    private final long startedAt = System.nanoTime();
+    private final long[] nanos = new long[PHASES.length];
+    private final int[] counts = new int[PHASES.length];
+
+    private ServerTiming() {
+    }
+
+    public static ServerTiming begin() {
+        ServerTiming serverTiming = new ServerTiming();
+        CURRENT.set(serverTiming);
+        return serverTiming;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    public static boolean isSampled() {
+        return CURRENT.get() != null;
+    }
+
+    public static void record(TimingPhase phase, long durationNanos) {
+        ServerTiming serverTiming = CURRENT.get();
+        if (serverTiming != null) {
+            serverTiming.nanos[phase.ordinal()] += durationNanos;
+            serverTiming.counts[phase.ordinal()]++;
+        }
+    }
+
+    // e.g. token;dur=0.041, app;dur=12.870, db;dur=3.112;desc="2", total;dur=13.502
+    public String toHeaderValue() {
+        StringBuilder header = new StringBuilder(160);
+        for (TimingPhase phase : PHASES) {
+            int count = counts[phase.ordinal()];
+            if (count > 0) {
+                append(header, phase.getMetricName(), nanos[phase.ordinal()]);
+                if (count > 1) {
+                    header.append(";desc=\"").append(count).append('"');
+                }
+                header.append(", ");
+            }
+        }
+        append(header, "total", System.nanoTime() - startedAt);
+        return header.toString();
+    }
+
+    // milliseconds with microsecond precision, without going through String.format
+    private static void append(StringBuilder header, String name, long durationNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        long fraction = micros % 1000;
+        header.append(name).append(";dur=").append(micros / 1000).append('.');
+        if (fraction < 100) {
+            header.append(fraction < 10 ? "00" : "0");
+        }
+        header.append(fraction);
+    }
+}
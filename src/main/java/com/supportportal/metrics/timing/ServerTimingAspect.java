@@ -0,0 +1,23 @@
+package com.supportportal.metrics.timing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+// handler methods of the controllers, the inherited ExceptionHandling methods are left out
+@Aspect
+public class ServerTimingAspect {
+
+    @Around("within(com.supportportal.controller..*) && execution(public * *(..))")
+    public Object timeController(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!ServerTiming.isSampled()) {
+            return joinPoint.proceed();
+        }
+        long startedAt = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ServerTiming.record(TimingPhase.CONTROLLER, System.nanoTime() - startedAt);
+        }
+    }
+}
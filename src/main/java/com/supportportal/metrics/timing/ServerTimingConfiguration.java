@@ -0,0 +1,55 @@
+package com.supportportal.metrics.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+
+import java.util.concurrent.TimeUnit;
+
+/* Server-Timing is opt-in, nothing here exists unless supportportal.server-timing.enabled is set.
+* Token, security context and bcrypt are recorded where they happen, they cost a ThreadLocal
+* read per request when the feature is off */
+@Configuration
+@ConditionalOnProperty(name = "supportportal.server-timing.enabled", havingValue = "true")
+public class ServerTimingConfiguration {
+
+    // added to the security chain by SecurityConfiguration, right before JwtAuthorizationFilter
+    @Bean
+    public ServerTimingFilter serverTimingFilter(@Value("${supportportal.server-timing.sample-rate:0.01}") double sampleRate) {
+        return new ServerTimingFilter(sampleRate);
+    }
+
+    // takes the place of Boot's MappingJackson2HttpMessageConverter
+    @Bean
+    public TimedJacksonHttpMessageConverter timedJacksonHttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJacksonHttpMessageConverter(objectMapper);
+    }
+
+    @Bean
+    public ServerTimingAspect serverTimingAspect() {
+        return new ServerTimingAspect();
+    }
+
+    // every repository call is reported with its duration by spring data, no proxy of our own.
+    // static, the repository factory beans are post-processed before this configuration exists
+    @Bean
+    public static BeanPostProcessor serverTimingRepositoryListener() {
+        RepositoryMethodInvocationListener listener = invocation ->
+                ServerTiming.record(TimingPhase.REPOSITORY, invocation.getDuration(TimeUnit.NANOSECONDS));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(
+                            repositoryFactory -> repositoryFactory.addInvocationListener(listener));
+                }
+                return bean;
+            }
+        };
+    }
+}
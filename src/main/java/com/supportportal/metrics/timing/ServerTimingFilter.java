@@ -0,0 +1,66 @@
+package com.supportportal.metrics.timing;
+
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.supportportal.utility.constants.MetricConstant.SERVER_TIMING_HEADER;
+
+/* Runs right before JwtAuthorizationFilter and answers a sample of requests with a Server-Timing
+* header. The header has to go out before the response commits, so it is written on the first
+* flush, error or redirect, or after the chain when nothing committed it. A body streamed past
+* the response buffer commits on its own and leaves without the header, JSON bodies of sampled
+* requests are buffered by TimedJacksonHttpMessageConverter for that reason */
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    private final double sampleRate;
+
+    public ServerTimingFilter(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ServerTiming serverTiming = ServerTiming.begin();
+        ServerTimingResponse timedResponse = new ServerTimingResponse(response, serverTiming);
+        try {
+            filterChain.doFilter(request, timedResponse);
+        } finally {
+            ServerTiming.end();
+            timedResponse.writeHeader();
+        }
+    }
+
+    private static final class ServerTimingResponse extends OnCommittedResponseWrapper {
+
+        private final ServerTiming serverTiming;
+
+        ServerTimingResponse(HttpServletResponse response, ServerTiming serverTiming) {
+            super(response);
+            this.serverTiming = serverTiming;
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            writeHeader();
+        }
+
+        // once only, whatever happens first
+        void writeHeader() {
+            if (!isDisableOnResponseCommitted() && !getResponse().isCommitted()) {
+                ((HttpServletResponse) getResponse()).setHeader(SERVER_TIMING_HEADER, serverTiming.toHeaderValue());
+            }
+            disableOnResponseCommitted();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.supportportal.metrics.timing;
+
+// Server-Timing entries in header order, phases nest so app already contains db, bcrypt and json
+public enum TimingPhase {
+    TOKEN("token"),
+    SECURITY("security"),
+    CONTROLLER("app"),
+    REPOSITORY("db"),
+    PASSWORD("bcrypt"),
+    JSON("json");
+
+    private final String metricName;
+
+    TimingPhase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,26 @@
+package com.supportportal.repository;
+
+import com.supportportal.entity.EmailOutbox;
+import com.supportportal.entity.enumeration.EmailStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Date;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // lock timeout -2 is hibernate's SKIP LOCKED: concurrent dispatchers claim disjoint batches instead of waiting
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select e from EmailOutbox e where e.status = :status and e.nextAttemptAt <= :now order by e.id")
+    List<EmailOutbox> claimDue(@Param("status") EmailStatus status, @Param("now") Date now, Pageable pageable);
+
+    long countByStatus(EmailStatus status);
+}
@@ -1,12 +1,58 @@
 package com.supportportal.repository;
 
 import com.supportportal.entity.User;
+import com.supportportal.repository.projection.UserExportRow;
+import com.supportportal.repository.projection.UserIdentity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     User findUserByUsername(String username);
 
     User findUserByEmail(String email);
+
+    // username and email conflicts in one round trip, both columns are unique indexed
+    List<UserIdentity> findByUsernameOrEmail(String username, String email);
+
+    // set-based variant for bulk imports, one query per chunk instead of two per user
+    List<UserIdentity> findByUsernameInOrEmailIn(Collection<String> usernames, Collection<String> emails);
+
+    // keyset pages, each seeks past the last row of the previous page through an index instead of an OFFSET scan
+    @Query("select u from User u where u.id > :id order by u.id")
+    List<User> findPageOrderById(@Param("id") Long afterId, Pageable pageable);
+
+    @Query("select u from User u where u.username > :username or (u.username = :username and u.id > :id) order by u.username, u.id")
+    List<User> findPageOrderByUsername(@Param("username") String afterUsername, @Param("id") Long afterId, Pageable pageable);
+
+    @Query("select u from User u where u.email > :email or (u.email = :email and u.id > :id) order by u.email, u.id")
+    List<User> findPageOrderByEmail(@Param("email") String afterEmail, @Param("id") Long afterId, Pageable pageable);
+
+    // forward-only cursor for exports, must be consumed inside a transaction and closed
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select u.id as id, u.userId as userId, u.firstName as firstName, u.lastName as lastName, u.username as username, " +
+            "u.email as email, u.role as role, u.isActive as active, u.isNotLocked as notLocked, " +
+            "u.joinDate as joinDate, u.lastLoginDate as lastLoginDate from User u order by u.id")
+    Stream<UserExportRow> streamAllForExport();
+
+    @Modifying
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    @Modifying
+    @Query("update User u set u.isNotLocked = :notLocked where u.id = :id")
+    int updateNotLocked(@Param("id") Long id, @Param("notLocked") boolean notLocked);
 }
 
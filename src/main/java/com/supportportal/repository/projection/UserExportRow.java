@@ -0,0 +1,29 @@
+package com.supportportal.repository.projection;
+
+import java.util.Date;
+
+// flat row for bulk export, scalar columns only so nothing is kept in the persistence context
+public interface UserExportRow {
+
+    Long getId();
+
+    String getUserId();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getUsername();
+
+    String getEmail();
+
+    String getRole();
+
+    Boolean getActive();
+
+    Boolean getNotLocked();
+
+    Date getJoinDate();
+
+    Date getLastLoginDate();
+}
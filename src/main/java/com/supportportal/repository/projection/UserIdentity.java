@@ -0,0 +1,11 @@
+package com.supportportal.repository.projection;
+
+// just the columns the uniqueness checks need, the entity and its collections are not loaded
+public interface UserIdentity {
+
+    Long getId();
+
+    String getUsername();
+
+    String getEmail();
+}
@@ -0,0 +1,95 @@
+package com.supportportal.security;
+
+import com.supportportal.security.enumeration.Permission;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/* Immutable set of permissions encoded as a bitmask. One instance exists per possible mask,
+* created up front, so turning a role or a token claim into GrantedAuthority objects and
+* checking a permission never allocates */
+public final class AuthoritySet {
+
+    private static final Permission[] PERMISSIONS = Permission.values();
+    private static final AuthoritySet[] INTERNED = new AuthoritySet[1 << PERMISSIONS.length];
+
+    static {
+        for (int mask = 0; mask < INTERNED.length; mask++) {
+            INTERNED[mask] = new AuthoritySet(mask);
+        }
+    }
+
+    public static final AuthoritySet EMPTY = INTERNED[0];
+
+    private final long mask;
+    private final List<GrantedAuthority> grantedAuthorities;
+    private final List<String> authorities;
+
+    private AuthoritySet(long mask) {
+        this.mask = mask;
+        List<GrantedAuthority> granted = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Permission permission : PERMISSIONS) {
+            if ((mask & permission.getBit()) != 0) {
+                granted.add(permission.getGrantedAuthority());
+                names.add(permission.getAuthority());
+            }
+        }
+        this.grantedAuthorities = List.copyOf(granted);
+        this.authorities = List.copyOf(names);
+    }
+
+    public static AuthoritySet of(long mask) {
+        if (mask < 0 || mask >= INTERNED.length) {
+            throw new IllegalArgumentException("Unknown permission bits in mask " + mask);
+        }
+        return INTERNED[(int) mask];
+    }
+
+    // null when any of the strings is not a registered Permission, callers keep the strings then
+    public static AuthoritySet fromAuthorities(Collection<String> authorities) {
+        long mask = 0;
+        for (String authority : authorities) {
+            Permission permission = Permission.fromAuthority(authority);
+            if (permission == null) {
+                return null;
+            }
+            mask |= permission.getBit();
+        }
+        return INTERNED[(int) mask];
+    }
+
+    // the registered authorities among the granted ones, anything else grants no Permission
+    public static AuthoritySet ofGranted(Collection<? extends GrantedAuthority> grantedAuthorities) {
+        long mask = 0;
+        for (GrantedAuthority grantedAuthority : grantedAuthorities) {
+            Permission permission = Permission.fromAuthority(grantedAuthority.getAuthority());
+            if (permission != null) {
+                mask |= permission.getBit();
+            }
+        }
+        return INTERNED[(int) mask];
+    }
+
+    public boolean containsAll(AuthoritySet other) {
+        return (mask & other.mask) == other.mask;
+    }
+
+    public boolean has(Permission permission) {
+        return (mask & permission.getBit()) != 0;
+    }
+
+    public long getMask() {
+        return mask;
+    }
+
+    public List<GrantedAuthority> getGrantedAuthorities() {
+        return grantedAuthorities;
+    }
+
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+}
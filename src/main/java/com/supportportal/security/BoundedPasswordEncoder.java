@@ -0,0 +1,150 @@
+package com.supportportal.security;
+
+import com.supportportal.exception.domain.LoginCapacityExceededException;
+import com.supportportal.metrics.jfr.PasswordMatchEvent;
+import com.supportportal.metrics.timing.ServerTiming;
+import com.supportportal.metrics.timing.TimingPhase;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.supportportal.utility.constants.Constants.LOGIN_CAPACITY_EXCEEDED;
+
+/* Runs the BCrypt check of every login on a dedicated pool sized to the cores, so a login storm
+* cannot pin every Tomcat worker thread. Admission is bounded twice: the queue has a fixed depth,
+* and a check that waited longer than maxQueueWait is dropped before hashing. Both end in
+* LoginCapacityExceededException, which is answered with 503 and Retry-After */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueWaitNanos;
+    private final long retryAfterSeconds;
+
+    private final LongAdder matchCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+
+    public BoundedPasswordEncoder(BCryptPasswordEncoder delegate, int poolSize, int queueCapacity,
+                                  long maxQueueWaitMillis, long retryAfterSeconds) {
+        this.delegate = delegate;
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-check-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // register and reset use the BCryptPasswordEncoder bean directly, this one only re-hashes after
+    // a login (see upgradeEncoding), so it costs the same as a check and goes through the same pool
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long submittedAt = System.nanoTime();
+        return await(submit(() -> {
+            if (System.nanoTime() - submittedAt > maxQueueWaitNanos) {
+                throw reject();
+            }
+            return delegate.encode(rawPassword);
+        }));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long submittedAt = System.nanoTime();
+        Future<Boolean> result = submit(() -> check(rawPassword, encodedPassword, submittedAt));
+        try {
+            return await(result);
+        } finally {
+            // seen from the request, queue wait included
+            ServerTiming.record(TimingPhase.PASSWORD, System.nanoTime() - submittedAt);
+        }
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw reject();
+        }
+    }
+
+    private <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LoginCapacityExceededException) {
+                throw (LoginCapacityExceededException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw reject();
+        }
+    }
+
+    private boolean check(CharSequence rawPassword, String encodedPassword, long submittedAt) {
+        long startedAt = System.nanoTime();
+        queueWaitNanos.add(startedAt - submittedAt);
+        // the client has most likely given up already, don't spend a hash on it
+        if (startedAt - submittedAt > maxQueueWaitNanos) {
+            throw reject();
+        }
+        PasswordMatchEvent event = new PasswordMatchEvent();
+        event.begin();
+        boolean matched = false;
+        try {
+            matched = delegate.matches(rawPassword, encodedPassword);
+            return matched;
+        } finally {
+            hashNanos.add(System.nanoTime() - startedAt);
+            matchCount.increment();
+            event.complete(CalibratedBCryptPasswordEncoder.costOf(encodedPassword), matched, startedAt - submittedAt);
+        }
+    }
+
+    private LoginCapacityExceededException reject() {
+        rejectedCount.increment();
+        return new LoginCapacityExceededException(LOGIN_CAPACITY_EXCEEDED, retryAfterSeconds);
+    }
+
+    // a re-hash is a second BCrypt run inside the login, it is left for a later login while checks are queued
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return executor.getQueue().isEmpty() && delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getMatchCount() {
+        return matchCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getTotalQueueWaitNanos() {
+        return queueWaitNanos.sum();
+    }
+
+    public long getTotalHashNanos() {
+        return hashNanos.sum();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,72 @@
+package com.supportportal.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* BCryptPasswordEncoder whose cost is measured on the machine it runs on: the highest cost whose
+* hash still fits the latency budget, never below minStrength. upgradeEncoding reports stored hashes
+* with a lower cost, so DaoAuthenticationProvider re-hashes them after a login. Several instances on
+* different hardware should pin the cost with supportportal.password.strength */
+@Slf4j
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$.{53}");
+    private static final String CALIBRATION_PASSWORD = "Calibrat10n";
+    private static final int CALIBRATION_ROUNDS = 3;
+
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    public static CalibratedBCryptPasswordEncoder calibrate(long latencyBudgetMillis, int minStrength, int maxStrength) {
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            long millis = measureMillis(new BCryptPasswordEncoder(strength));
+            log.info("BCrypt cost " + strength + " takes " + millis + " ms");
+            if (millis > latencyBudgetMillis) {
+                break;
+            }
+            chosen = strength;
+        }
+        log.info("Using BCrypt cost " + chosen + " for a " + latencyBudgetMillis + " ms budget");
+        return new CalibratedBCryptPasswordEncoder(chosen);
+    }
+
+    // fastest of a few rounds, the first one also warms up the JIT
+    private static long measureMillis(BCryptPasswordEncoder encoder) {
+        long fastest = Long.MAX_VALUE;
+        for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest / 1_000_000;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // only ever upwards: instances calibrated on different hardware would otherwise keep
+        // re-hashing the same user back and forth between their costs
+        int cost = costOf(encodedPassword);
+        return cost >= 0 && cost < strength;
+    }
+
+    // cost of a stored BCrypt hash, -1 for anything else
+    public static int costOf(String encodedPassword) {
+        if (encodedPassword == null) {
+            return -1;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
@@ -0,0 +1,74 @@
+package com.supportportal.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/* Encrypts outbox email bodies at rest, a new password email carries the generated password and
+* sits in email_outbox (and its backups) until it is sent or given up on. AES-GCM with a random
+* IV per body, the key is a SHA-256 of the configured secret. Bodies without the prefix were
+* queued before encryption and are passed through, so they still drain after an upgrade */
+@Component
+public class EmailBodyCipher {
+
+    private static final String PREFIX = "enc:v1:";
+    private static final String KEY_LABEL = "supportportal-email-outbox:";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Autowired
+    public EmailBodyCipher(@Value("${supportportal.mail.outbox-secret:${jwt.secret}}") String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest((KEY_LABEL + secret).getBytes(StandardCharsets.UTF_8));
+            this.key = new SecretKeySpec(digest, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public String encrypt(String body) {
+        if (body == null) {
+            return null;
+        }
+        byte[] iv = new byte[IV_BYTES];
+        secureRandom.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            byte[] encrypted = cipher.doFinal(body.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer stored = ByteBuffer.allocate(IV_BYTES + encrypted.length).put(iv).put(encrypted);
+            return PREFIX + Base64.getEncoder().encodeToString(stored.array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt email body", e);
+        }
+    }
+
+    // IllegalStateException when the body was tampered with or encrypted under another secret
+    public String decrypt(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return stored;
+        }
+        try {
+            byte[] bytes = Base64.getDecoder().decode(stored.substring(PREFIX.length()));
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, bytes, 0, IV_BYTES));
+            return new String(cipher.doFinal(bytes, IV_BYTES, bytes.length - IV_BYTES), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Could not decrypt email body", e);
+        }
+    }
+}
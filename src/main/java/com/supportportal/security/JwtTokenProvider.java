@@ -1,12 +1,16 @@
 package com.supportportal.security;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.supportportal.entity.UserPrinciple;
+import com.supportportal.metrics.jfr.TokenIssueEvent;
+import com.supportportal.metrics.jfr.TokenVerifyEvent;
 import com.supportportal.utility.constants.SecurityConstant;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -19,40 +23,77 @@ import javax.servlet.http.HttpServletRequest;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import static com.supportportal.utility.constants.MetricConstant.*;
 import static com.supportportal.utility.constants.SecurityConstant.*;
 
 @Component
 public class JwtTokenProvider {
 
-    @Value(value = "${jwt.secret}")
-    private String secret;
+    // both are immutable and thread safe, hence built once per key instead of once per call
+    private final Algorithm algorithm;
+    private final JWTVerifier jwtVerifier;
+    private final VerifiedTokenCache verifiedTokenCache;
+    // issue the permission bitmask instead of the authority strings, both forms are always accepted
+    private final boolean compactAuthorities;
+
+    public JwtTokenProvider(@Value(value = "${jwt.secret}") String secret, VerifiedTokenCache verifiedTokenCache,
+                            @Value(value = "${jwt.compact-authorities:false}") boolean compactAuthorities) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.compactAuthorities = compactAuthorities;
+        this.algorithm = HMAC512(secret.getBytes());
+        this.jwtVerifier = JWT.require(algorithm)
+                .withIssuer(GET_LISTS_LLC)
+                .build();
+    }
 
     public String generateJwtToken(UserPrinciple userPrinciple) {
-        String[] claims = getClaimsFromUser(userPrinciple);
-        return JWT.create()
+        TokenIssueEvent event = new TokenIssueEvent();
+        event.begin();
+        JWTCreator.Builder builder = JWT.create()
                 .withIssuer(GET_LISTS_LLC)
                 .withAudience(GET_LISTS_ADMINISTRATION)
                 .withIssuedAt(new Date())
-                .withSubject(userPrinciple.getUsername()) // has to be unique to identify individual user
-                .withArrayClaim(AUTHORITIES, claims)
+                .withSubject(userPrinciple.getUsername()); // has to be unique to identify individual user
+        if (compactAuthorities) {
+            builder.withClaim(PERMISSIONS, userPrinciple.getAuthoritySet().getMask());
+        } else {
+            builder.withArrayClaim(AUTHORITIES, getClaimsFromUser(userPrinciple));
+        }
+        String token = builder
                 .withExpiresAt(new Date(System.currentTimeMillis()+ SecurityConstant.EXPIRATION_TIME))
-                .sign((HMAC512(secret.getBytes())));
+                .sign(algorithm);
+        event.complete(compactAuthorities, userPrinciple.getAuthorities().size());
+        return token;
     }
 
-    public List<GrantedAuthority> getAuthorities(String token) {
-        String[] claims = getClaimsFromToken(token);
-        return Arrays.stream(claims).map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
-    }
-
-    // if token gets verified, then all permissions regarding user and retrieved
-    private String[] getClaimsFromToken(String token) {
-        JWTVerifier jwtVerifier = getJWTVerifier();
-        // returns a list of all the Authorities granted to a User via Token
-        return jwtVerifier.verify(token).getClaim(AUTHORITIES).asArray(String.class);
+    // checks the signature exactly once and hands back everything the filter needs.
+    // if the token is tampered with or expired, JWTVerificationException is thrown
+    public VerifiedToken verifyToken(String token) {
+        TokenVerifyEvent event = new TokenVerifyEvent();
+        event.begin();
+        // a token seen before was already verified, no crypto work needed on a hit
+        Optional<VerifiedToken> cachedToken = verifiedTokenCache.get(token);
+        if (cachedToken.isPresent()) {
+            event.complete(true, TOKEN_VALID);
+            return cachedToken.get();
+        }
+        try {
+            DecodedJWT decodedJWT = jwtVerifier.verify(token);
+            VerifiedToken verifiedToken = new VerifiedToken(decodedJWT.getSubject(), getAuthorities(decodedJWT), decodedJWT.getExpiresAt());
+            verifiedTokenCache.put(token, verifiedToken);
+            event.complete(false, TOKEN_VALID);
+            return verifiedToken;
+        } catch (TokenExpiredException e) {
+            event.complete(false, TOKEN_EXPIRED);
+            throw e;
+        } catch (JWTVerificationException e) {
+            event.complete(false, TOKEN_INVALID);
+            throw e;
+        }
     }
 
     // tells security to process request assuming user has been authenticated
@@ -66,34 +107,27 @@ public class JwtTokenProvider {
         return authenticationToken;
     }
 
-    public boolean isTokenValid(String username, String token) {
-        JWTVerifier jwtVerifier = getJWTVerifier();
-        return StringUtils.isNotEmpty(username) && !isTokenExpired(jwtVerifier,token);
-    }
-
-    public String getSubject(String token) {
-        JWTVerifier jwtVerifier = getJWTVerifier();
-        return  jwtVerifier.verify(token).getSubject();
-    }
-
-    private boolean isTokenExpired(JWTVerifier jwtVerifier, String token) {
-        Date expiration = jwtVerifier.verify(token).getExpiresAt();
-        return expiration.before(new Date());
-    }
-
-    private JWTVerifier getJWTVerifier() {
-        JWTVerifier jwtVerifier;
-        try{
-            Algorithm algorithm = HMAC512(secret);
-            jwtVerifier = JWT.require(algorithm)
-                    .withIssuer(GET_LISTS_LLC)
-                    .build();
-
-        }catch (JWTVerificationException jwtException){
-            // throwing this to avoid user seeing inner workings of app
+    // returns a list of all the Authorities granted to a User via Token
+    private List<GrantedAuthority> getAuthorities(DecodedJWT decodedJWT) {
+        Long permissions = decodedJWT.getClaim(PERMISSIONS).asLong();
+        if (permissions != null) {
+            try {
+                return AuthoritySet.of(permissions).getGrantedAuthorities();
+            } catch (IllegalArgumentException e) {
+                throw new JWTVerificationException(TOKEN_CANNOT_BE_VERIFIED);
+            }
+        }
+        String[] claims = decodedJWT.getClaim(AUTHORITIES).asArray(String.class);
+        if (claims == null) {
             throw new JWTVerificationException(TOKEN_CANNOT_BE_VERIFIED);
         }
-        return jwtVerifier;
+        // registered authorities map onto the shared instances, anything else is kept as is
+        AuthoritySet authoritySet = AuthoritySet.fromAuthorities(Arrays.asList(claims));
+        if (authoritySet != null) {
+            return authoritySet.getGrantedAuthorities();
+        }
+        return Arrays.stream(claims).map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
     }
 
     private String[] getClaimsFromUser(UserPrinciple userPrinciple) {
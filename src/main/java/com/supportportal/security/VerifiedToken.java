@@ -0,0 +1,42 @@
+package com.supportportal.security;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+
+// immutable result of a single signature check, holds everything the filter needs
+public final class VerifiedToken {
+
+    private final String subject;
+    private final List<GrantedAuthority> authorities;
+    private final long expiresAtMillis;
+
+    public VerifiedToken(String subject, List<GrantedAuthority> authorities, Date expiresAt) {
+        this.subject = subject;
+        // no copy when handed an already immutable list, e.g. from AuthoritySet
+        this.authorities = List.copyOf(authorities);
+        this.expiresAtMillis = expiresAt.getTime();
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    public Date getExpiresAt() {
+        return new Date(expiresAtMillis);
+    }
+
+    public boolean isExpired() {
+        return expiresAtMillis < System.currentTimeMillis();
+    }
+
+    public boolean isValid() {
+        return StringUtils.isNotEmpty(subject) && !isExpired();
+    }
+}
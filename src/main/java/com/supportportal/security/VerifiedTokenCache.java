@@ -0,0 +1,93 @@
+package com.supportportal.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+
+import static com.supportportal.utility.constants.SecurityConstant.EXPIRATION_TIME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/* Keeps tokens that already passed the HMAC check, so a client re-sending the same
+* bearer token skips signature and Base64/JSON work. Entries are keyed by a SHA-256
+* digest (the raw token is never held) and are dropped once the token's own exp passes */
+@Component
+public class VerifiedTokenCache {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final boolean enabled;
+    private final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.cache.maximum-size:10000}") long maximumSize) {
+        this.enabled = enabled;
+        // no entry can outlive the longest token we ever issue, exp is checked per entry on read
+        this.verifiedTokens = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(EXPIRATION_TIME, MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<VerifiedToken> get(String token) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        ByteBuffer key = digest(token);
+        VerifiedToken verifiedToken = verifiedTokens.getIfPresent(key);
+        if (verifiedToken != null && verifiedToken.isExpired()) {
+            // expired entries go back through the verifier, so the caller gets TokenExpiredException
+            verifiedTokens.invalidate(key);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(verifiedToken);
+    }
+
+    public void put(String token, VerifiedToken verifiedToken) {
+        if (enabled && !verifiedToken.isExpired()) {
+            verifiedTokens.put(digest(token), verifiedToken);
+        }
+    }
+
+    public long size() {
+        return verifiedTokens.size();
+    }
+
+    public long hitCount() {
+        return verifiedTokens.stats().hitCount();
+    }
+
+    public long missCount() {
+        return verifiedTokens.stats().missCount();
+    }
+
+    public long evictionCount() {
+        return verifiedTokens.stats().evictionCount();
+    }
+
+    public CacheStats stats() {
+        return verifiedTokens.stats();
+    }
+
+    private ByteBuffer digest(String token) {
+        try {
+            // MessageDigest is not thread safe, getInstance is cheap compared to the HMAC it replaces
+            MessageDigest messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            return ByteBuffer.wrap(messageDigest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " not available", e);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.supportportal.security.configuration;
 
+import com.supportportal.metrics.timing.ServerTimingFilter;
+import com.supportportal.security.BoundedPasswordEncoder;
 import com.supportportal.security.filter.JwtAccessDeniedHandler;
 import com.supportportal.security.filter.JwtAuthenticationEntryPoint;
 import com.supportportal.security.filter.JwtAuthorizationFilter;
 import com.supportportal.utility.constants.SecurityConstant;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,7 +18,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -33,22 +35,26 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter{
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
     private final JwtAuthorizationFilter jwtAuthorizationFilter;
     private final UserDetailsService userDetailsService;
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final BoundedPasswordEncoder loginPasswordEncoder;
+    private final ObjectProvider<ServerTimingFilter> serverTimingFilter;
 
     // @Qualifier("UserDetailsService") being used as want spring to implement overridden method in UserService
     public SecurityConfiguration(JwtAccessDeniedHandler jwtAccessDeniedHandler, JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
-                                 JwtAuthorizationFilter jwtAuthorizationFilter, BCryptPasswordEncoder bCryptPasswordEncoder,
-                                 @Qualifier("UserDetailsService") UserDetailsService userDetailsService) {
+                                 JwtAuthorizationFilter jwtAuthorizationFilter, BoundedPasswordEncoder loginPasswordEncoder,
+                                 @Qualifier("UserDetailsService") UserDetailsService userDetailsService,
+                                 ObjectProvider<ServerTimingFilter> serverTimingFilter) {
         this.jwtAccessDeniedHandler = jwtAccessDeniedHandler;
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
         this.jwtAuthorizationFilter = jwtAuthorizationFilter;
         this.userDetailsService = userDetailsService;
-        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.loginPasswordEncoder = loginPasswordEncoder;
+        this.serverTimingFilter = serverTimingFilter;
     }
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(bCryptPasswordEncoder);
+        // the BCryptPasswordEncoder bean, but checked on a bounded pool instead of the request thread
+        auth.userDetailsService(userDetailsService).passwordEncoder(loginPasswordEncoder);
     }
 
     @Override
@@ -62,6 +68,8 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter{
                 .authenticationEntryPoint(jwtAuthenticationEntryPoint)
                 .and()
                 .addFilterBefore(jwtAuthorizationFilter, UsernamePasswordAuthenticationFilter.class);
+        // only with supportportal.server-timing.enabled, ahead of the token check so it is timed too
+        serverTimingFilter.ifAvailable(filter -> http.addFilterBefore(filter, JwtAuthorizationFilter.class));
     }
 
     @Bean
@@ -0,0 +1,48 @@
+package com.supportportal.security.enumeration;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/* Fixed registry of every authority string in Authority. The ordinal is the bit in a
+* permission mask, so constants may only ever be appended, never reordered or removed,
+* or masks in already issued tokens change meaning */
+public enum Permission {
+    USER_READ("user:read"),
+    USER_UPDATE("user:update"),
+    USER_CREATE("user:create"),
+    USER_DELETE("user:delete");
+
+    private static final Map<String, Permission> BY_AUTHORITY = Arrays.stream(values())
+            .collect(Collectors.toUnmodifiableMap(Permission::getAuthority, Function.identity()));
+
+    private final String authority;
+    private final GrantedAuthority grantedAuthority;
+
+    Permission(String authority) {
+        this.authority = authority;
+        this.grantedAuthority = new SimpleGrantedAuthority(authority);
+    }
+
+    public String getAuthority() {
+        return authority;
+    }
+
+    // shared instance, SimpleGrantedAuthority is immutable
+    public GrantedAuthority getGrantedAuthority() {
+        return grantedAuthority;
+    }
+
+    public long getBit() {
+        return 1L << ordinal();
+    }
+
+    // null when the string is not a registered authority
+    public static Permission fromAuthority(String authority) {
+        return BY_AUTHORITY.get(authority);
+    }
+}
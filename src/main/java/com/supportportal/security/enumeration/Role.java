@@ -1,6 +1,9 @@
 package com.supportportal.security.enumeration;
 
+import com.supportportal.security.AuthoritySet;
+
 import java.util.List;
+import java.util.Objects;
 
 import static com.supportportal.utility.constants.Authority.*;
 
@@ -11,13 +14,18 @@ public enum Role {
     ROLE_ADMIN(ADMIN_AUTHORITIES),
     ROLE_SUPER_ADMIN(SUPER_ADMIN_AUTHORITIES);
 
-    private final String[] authorities;
+    private final AuthoritySet authoritySet;
 
     Role(String... authorities){
-        this.authorities = authorities;
+        // every authority of a role has to be registered in Permission
+        this.authoritySet = Objects.requireNonNull(AuthoritySet.fromAuthorities(List.of(authorities)));
     }
 
     public List<String> getAuthorities(){
-        return List.of(authorities);
+        return authoritySet.getAuthorities();
+    }
+
+    public AuthoritySet getAuthoritySet(){
+        return authoritySet;
     }
 }
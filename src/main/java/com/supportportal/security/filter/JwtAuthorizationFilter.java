@@ -1,10 +1,16 @@
 package com.supportportal.security.filter;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.google.common.net.HttpHeaders;
+import com.supportportal.metrics.timing.ServerTiming;
+import com.supportportal.metrics.timing.TimingPhase;
 import com.supportportal.security.JwtTokenProvider;
+import com.supportportal.security.VerifiedToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -14,8 +20,9 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import static com.supportportal.utility.constants.MetricConstant.*;
 import static com.supportportal.utility.constants.SecurityConstant.OPTIONS_HTTP_METHOD;
 import static com.supportportal.utility.constants.SecurityConstant.TOKEN_PREFIX;
 
@@ -23,9 +30,23 @@ import static com.supportportal.utility.constants.SecurityConstant.TOKEN_PREFIX;
 public class JwtAuthorizationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
+    // registered once, a registry lookup per request would cost more than the recording
+    private final Timer validTimer;
+    private final Timer invalidTimer;
+    private final Timer expiredTimer;
 
-    public JwtAuthorizationFilter(JwtTokenProvider jwtTokenProvider) {
+    public JwtAuthorizationFilter(JwtTokenProvider jwtTokenProvider, MeterRegistry meterRegistry) {
         this.jwtTokenProvider = jwtTokenProvider;
+        this.validTimer = verifyTimer(meterRegistry, TOKEN_VALID);
+        this.invalidTimer = verifyTimer(meterRegistry, TOKEN_INVALID);
+        this.expiredTimer = verifyTimer(meterRegistry, TOKEN_EXPIRED);
+    }
+
+    private static Timer verifyTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder(JWT_VERIFY_TIMER)
+                .description("Bearer token verification, cache hits included")
+                .tag(OUTCOME_TAG, outcome)
+                .register(meterRegistry);
     }
 
     @Override
@@ -40,10 +61,11 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
             }
             String token = authorizationHeader.substring(TOKEN_PREFIX.length());
             // if at this point the token is tampered with, then it will not work
-            String username = jwtTokenProvider.getSubject(token);
-            if(jwtTokenProvider.isTokenValid(username,token) && SecurityContextHolder.getContext().getAuthentication() == null){
-                List<GrantedAuthority> authorities = jwtTokenProvider.getAuthorities(token);
-                Authentication authentication = jwtTokenProvider.getAuthentication(username,authorities, request);
+            VerifiedToken verifiedToken = verifyToken(token);
+            long contextStartedAt = System.nanoTime();
+            if(verifiedToken.isValid() && SecurityContextHolder.getContext().getAuthentication() == null){
+                Authentication authentication = jwtTokenProvider.getAuthentication(verifiedToken.getSubject(),
+                        verifiedToken.getAuthorities(), request);
                 // Setting security context provided token was valid and security context was not set
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             }
@@ -51,8 +73,26 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
                 // if things haven't checked out, clear entire context
                 SecurityContextHolder.clearContext();
             }
+            ServerTiming.record(TimingPhase.SECURITY, System.nanoTime() - contextStartedAt);
         }
         // Everything has checked out, let request continue its course
         filterChain.doFilter(request,response);
     }
+
+    private VerifiedToken verifyToken(String token) {
+        long startedAt = System.nanoTime();
+        try {
+            VerifiedToken verifiedToken = jwtTokenProvider.verifyToken(token);
+            (verifiedToken.isValid() ? validTimer : invalidTimer).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            return verifiedToken;
+        } catch (TokenExpiredException e) {
+            expiredTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            throw e;
+        } catch (JWTVerificationException e) {
+            invalidTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            throw e;
+        } finally {
+            ServerTiming.record(TimingPhase.TOKEN, System.nanoTime() - startedAt);
+        }
+    }
 }
@@ -0,0 +1,297 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.EmailOutbox;
+import com.supportportal.repository.EmailOutboxRepository;
+import com.supportportal.security.EmailBodyCipher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.mail.*;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.supportportal.entity.enumeration.EmailStatus.FAILED;
+import static com.supportportal.entity.enumeration.EmailStatus.PENDING;
+import static com.supportportal.utility.constants.EmailConstant.*;
+import static com.supportportal.utility.constants.MetricConstant.EMAIL_SEND_TIMER;
+import static com.supportportal.utility.constants.MetricConstant.OUTCOME_TAG;
+import static javax.mail.Message.RecipientType.CC;
+import static javax.mail.Message.RecipientType.TO;
+
+/* Drains the email outbox in batches on the scheduler thread. A batch is claimed with SKIP LOCKED
+* inside one transaction, so several instances can dispatch side by side, and every message of it
+* goes over the same SMTP connection. The connection stays open between runs and is closed after
+* idle-timeout-ms without traffic. A failed message is retried with exponential backoff up to
+* max-attempts, then kept as FAILED without its body; a sent one is deleted right away. Bodies are
+* stored encrypted (see EmailBodyCipher) and only decrypted into the message. An unreachable server pauses the dispatcher
+* with the same backoff and leaves the batch untouched. A connection dropped mid-batch ends the
+* run, the messages not tried yet stay as they were and go out over a new connection next run */
+@Slf4j
+@Service
+public class EmailDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailBodyCipher emailBodyCipher;
+    private final TransactionTemplate transactionTemplate;
+    private final Session session;
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final String from;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long idleTimeoutMillis;
+    private final Timer sentTimer;
+    private final Timer failedTimer;
+
+    // the connection is shared by the scheduled runs and shutdown
+    private final ReentrantLock transportLock = new ReentrantLock();
+    private Transport transport;
+    private long lastUsedAt;
+    private volatile long pausedUntil;
+    private int connectFailures;
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder failedAttemptCount = new LongAdder();
+    private final LongAdder abandonedCount = new LongAdder();
+    private final LongAdder connectionCount = new LongAdder();
+
+    public EmailDispatcher(EmailOutboxRepository emailOutboxRepository, EmailBodyCipher emailBodyCipher,
+                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                           @Value("${supportportal.mail.protocol:" + SIMPLE_MAIL_TRANSFER_PROTOCOL + "}") String protocol,
+                           @Value("${supportportal.mail.host:" + GMAIL_SMTP_SERVER + "}") String host,
+                           @Value("${supportportal.mail.port:" + DEFAULT_PORT + "}") int port,
+                           @Value("${supportportal.mail.username:" + USERNAME + "}") String username,
+                           @Value("${supportportal.mail.password:" + PASSWORD + "}") String password,
+                           @Value("${supportportal.mail.from:" + FROM_EMAIL + "}") String from,
+                           @Value("${supportportal.mail.starttls:true}") boolean starttls,
+                           @Value("${supportportal.mail.timeout-ms:10000}") long timeoutMillis,
+                           @Value("${supportportal.mail.batch-size:50}") int batchSize,
+                           @Value("${supportportal.mail.max-batches-per-run:20}") int maxBatchesPerRun,
+                           @Value("${supportportal.mail.max-attempts:8}") int maxAttempts,
+                           @Value("${supportportal.mail.initial-backoff-ms:5000}") long initialBackoffMillis,
+                           @Value("${supportportal.mail.max-backoff-ms:3600000}") long maxBackoffMillis,
+                           @Value("${supportportal.mail.idle-timeout-ms:60000}") long idleTimeoutMillis) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailBodyCipher = emailBodyCipher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sentTimer = sendTimer(meterRegistry, "sent");
+        this.failedTimer = sendTimer(meterRegistry, "failed");
+        this.protocol = protocol;
+        this.host = host;
+        this.port = port;
+        this.username = StringUtils.isEmpty(username) ? null : username;
+        this.password = this.username == null ? null : password;
+        this.from = from;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        // built once from our own properties, never from System.getProperties()
+        String prefix = "mail." + protocol + ".";
+        Properties properties = new Properties();
+        properties.put(prefix + "host", host);
+        properties.put(prefix + "port", String.valueOf(port));
+        properties.put(prefix + "auth", String.valueOf(this.username != null));
+        properties.put(prefix + "starttls.enable", String.valueOf(starttls));
+        properties.put(prefix + "connectiontimeout", String.valueOf(timeoutMillis));
+        properties.put(prefix + "timeout", String.valueOf(timeoutMillis));
+        properties.put(prefix + "writetimeout", String.valueOf(timeoutMillis));
+        this.session = Session.getInstance(properties);
+    }
+
+    @Scheduled(fixedDelayString = "${supportportal.mail.dispatch-interval-ms:1000}")
+    public void dispatch() {
+        if (System.currentTimeMillis() < pausedUntil || !transportLock.tryLock()) {
+            return;
+        }
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                Integer claimed = transactionTemplate.execute(status -> dispatchBatch());
+                // a short batch means the backlog is drained
+                if (claimed == null || claimed < batchSize) {
+                    break;
+                }
+            }
+            if (transport != null && System.currentTimeMillis() - lastUsedAt > idleTimeoutMillis) {
+                closeTransport();
+            }
+        } finally {
+            transportLock.unlock();
+        }
+    }
+
+    // -1 when the server could not be reached or dropped the connection, the unsent rest of the batch then stays as it was
+    private int dispatchBatch() {
+        List<EmailOutbox> batch = emailOutboxRepository.claimDue(PENDING, new Date(), PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            connect();
+        } catch (MessagingException e) {
+            connectFailures++;
+            pausedUntil = System.currentTimeMillis() + backoffMillis(connectFailures);
+            log.error("Could not connect to " + host + ":" + port + ", pausing email dispatch: " + e.getMessage());
+            return -1;
+        }
+        connectFailures = 0;
+        for (EmailOutbox email : batch) {
+            if (!send(email)) {
+                return -1;
+            }
+        }
+        lastUsedAt = System.currentTimeMillis();
+        return batch.size();
+    }
+
+    // false when the connection was lost, the email itself has been updated either way
+    private boolean send(EmailOutbox email) {
+        String body;
+        try {
+            body = emailBodyCipher.decrypt(email.getBody());
+        } catch (IllegalStateException e) {
+            // tampered with or written under another outbox secret, no retry can fix that
+            giveUp(email, e.getMessage());
+            return true;
+        }
+        long startedAt = System.nanoTime();
+        try {
+            Message message = createEmail(email, body);
+            transport.sendMessage(message, message.getAllRecipients());
+            sentTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            emailOutboxRepository.delete(email);
+            sentCount.increment();
+            return true;
+        } catch (MessagingException e) {
+            failedTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            failedAttemptCount.increment();
+            email.setAttempts(email.getAttempts() + 1);
+            email.setLastError(StringUtils.abbreviate(String.valueOf(e.getMessage()), 255));
+            if (email.getAttempts() >= maxAttempts) {
+                giveUp(email, "after " + email.getAttempts() + " attempts: " + e.getMessage());
+            } else {
+                email.setNextAttemptAt(new Date(System.currentTimeMillis() + backoffMillis(email.getAttempts())));
+            }
+            // the remaining messages are not tried on a dropped connection, the next run reconnects
+            if (!transport.isConnected()) {
+                log.warn("SMTP connection to " + host + ":" + port + " dropped, leaving the rest of the batch for the next run");
+                closeTransport();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    // the row stays for inspection, the body goes as it can hold a generated password
+    private void giveUp(EmailOutbox email, String reason) {
+        email.setStatus(FAILED);
+        email.setBody(null);
+        abandonedCount.increment();
+        log.error("Giving up on email " + email.getId() + " " + reason);
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder(EMAIL_SEND_TIMER)
+                .description("SMTP send of one outbox email on the open connection")
+                .tag(OUTCOME_TAG, outcome)
+                .register(meterRegistry);
+    }
+
+    private void connect() throws MessagingException {
+        if (transport != null && transport.isConnected()) {
+            return;
+        }
+        closeTransport();
+        Transport newTransport = session.getTransport(protocol);
+        newTransport.connect(host, port, username, password);
+        transport = newTransport;
+        connectionCount.increment();
+    }
+
+    private Message createEmail(EmailOutbox email, String body) throws MessagingException {
+        Message message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(from));
+        message.setRecipients(TO, InternetAddress.parse(email.getRecipient(), false));
+        if (StringUtils.isNotEmpty(email.getCc())) {
+            message.setRecipients(CC, InternetAddress.parse(email.getCc(), false));
+        }
+        message.setSubject(email.getSubject());
+        message.setText(body);
+        message.setSentDate(new Date());
+        message.saveChanges();
+        return message;
+    }
+
+    private long backoffMillis(int attempts) {
+        long backoff = initialBackoffMillis << Math.min(attempts - 1, 30);
+        return backoff <= 0 ? maxBackoffMillis : Math.min(backoff, maxBackoffMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transportLock.lock();
+        try {
+            closeTransport();
+        } finally {
+            transportLock.unlock();
+        }
+    }
+
+    private void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Closing SMTP connection failed: " + e.getMessage());
+            }
+            transport = null;
+        }
+    }
+
+    public long getBacklog() {
+        return emailOutboxRepository.countByStatus(PENDING);
+    }
+
+    public long getFailedCount() {
+        return emailOutboxRepository.countByStatus(FAILED);
+    }
+
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    public long getFailedAttemptCount() {
+        return failedAttemptCount.sum();
+    }
+
+    public long getAbandonedCount() {
+        return abandonedCount.sum();
+    }
+
+    public long getConnectionCount() {
+        return connectionCount.sum();
+    }
+}
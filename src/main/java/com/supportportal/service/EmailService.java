@@ -1,50 +1,43 @@
 package com.supportportal.service;
 
-import com.sun.mail.smtp.SMTPTransport;
+import com.supportportal.entity.EmailOutbox;
+import com.supportportal.repository.EmailOutboxRepository;
+import com.supportportal.security.EmailBodyCipher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
-import javax.mail.Message;
-import javax.mail.MessagingException;
-import javax.mail.Session;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
 import java.util.Date;
-import java.util.Properties;
 
+import static com.supportportal.entity.enumeration.EmailStatus.PENDING;
 import static com.supportportal.utility.constants.EmailConstant.*;
-import static javax.mail.Message.RecipientType.CC;
-import static javax.mail.Message.RecipientType.TO;
 
+/* Queues emails in the outbox instead of talking SMTP on the request thread. The row joins the
+* caller's transaction, so the email exists exactly when the user change that caused it commits.
+* EmailDispatcher sends it shortly after. The body holds the generated password, so it is stored
+* encrypted and the row is deleted as soon as the message is sent */
 @Service
 public class EmailService {
 
-    public void sendNewPasswordEmail(String firstName, String password, String email) throws MessagingException {
-        Message message = createEmail(firstName, password, email);
-        SMTPTransport smtpTransport = (SMTPTransport) getEmailSession().getTransport(SIMPLE_MAIL_TRANSFER_PROTOCOL);
-        smtpTransport.connect(GMAIL_SMTP_SERVER, USERNAME, PASSWORD);
-        smtpTransport.sendMessage(message, message.getAllRecipients());
-        smtpTransport.close();
-    }
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailBodyCipher emailBodyCipher;
 
-    private Message createEmail(String firstName, String password, String email) throws MessagingException {
-        Message message = new MimeMessage(getEmailSession());
-        message.setFrom(new InternetAddress(FROM_EMAIL));
-        message.setRecipients(TO, InternetAddress.parse(email, false));
-        message.setRecipients(CC, InternetAddress.parse(CC_EMAIL, false));
-        message.setSubject(EMAIL_SUBJECT);
-        message.setText("Hello " + firstName + ", \n \n Your new account password is: " + password + "\n \n The Support Team");
-        message.setSentDate(new Date());
-        message.saveChanges();
-        return message;
+    public EmailService(EmailOutboxRepository emailOutboxRepository, EmailBodyCipher emailBodyCipher) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailBodyCipher = emailBodyCipher;
     }
 
-    private Session getEmailSession() {
-        Properties properties = System.getProperties();
-        properties.put(SMTP_HOST, GMAIL_SMTP_SERVER);
-        properties.put(SMTP_AUTH, true);
-        properties.put(SMTP_PORT, DEFAULT_PORT);
-        properties.put(SMTP_STARTTLS_ENABLE, true);
-        properties.put(SMTP_STARTTLS_REQUIRED, true);
-        return Session.getInstance(properties, null);
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void sendNewPasswordEmail(String firstName, String password, String email) {
+        Date now = new Date();
+        emailOutboxRepository.save(EmailOutbox.builder()
+                .recipient(email)
+                .cc(CC_EMAIL)
+                .subject(EMAIL_SUBJECT)
+                .body(emailBodyCipher.encrypt("Hello " + firstName + ", \n \n Your new account password is: " + password + "\n \n The Support Team"))
+                .status(PENDING)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build());
     }
 }
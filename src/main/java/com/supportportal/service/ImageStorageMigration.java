@@ -0,0 +1,124 @@
+package com.supportportal.service;
+
+import com.supportportal.service.interfaces.IImageStorage;
+import com.supportportal.utility.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Moves every user folder left in the legacy layout into the image storage while the application
+* serves traffic. Each folder is one rename and reads fall back to the legacy path meanwhile, so
+* there is no downtime; uploads migrate their own user first and never race a worker. Enable with
+* supportportal.image.migration.enabled, the run starts once the application is ready and can be
+* repeated safely, already moved folders are simply no longer listed */
+@Slf4j
+@Service
+public class ImageStorageMigration implements DisposableBean {
+
+    private final IImageStorage imageStorage;
+    private final boolean enabled;
+    private final int parallelism;
+    private final boolean virtualThreads;
+    // not synchronized, a virtual thread waiting for the run would pin its carrier
+    private final ReentrantLock migrationLock = new ReentrantLock();
+    private volatile ExecutorService executor;
+
+    private final LongAdder migratedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public ImageStorageMigration(IImageStorage imageStorage,
+                                 @Value("${supportportal.image.migration.enabled:false}") boolean enabled,
+                                 @Value("${supportportal.image.migration.parallelism:4}") int parallelism,
+                                 @Value("${supportportal.threads.virtual:false}") boolean virtualThreads) {
+        this.imageStorage = imageStorage;
+        this.enabled = enabled;
+        this.parallelism = parallelism;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            Thread runner = new Thread(this::migrateAll, "image-migration");
+            runner.setDaemon(true);
+            runner.start();
+        }
+    }
+
+    // blocks until every listed folder was handled, returns the number moved
+    public long migrateAll() {
+        migrationLock.lock();
+        try {
+            return migrateListed();
+        } finally {
+            migrationLock.unlock();
+        }
+    }
+
+    private long migrateListed() {
+        List<String> usernames;
+        try {
+            usernames = imageStorage.legacyUsernames();
+        } catch (IOException e) {
+            log.error("Could not list legacy image folders: " + e.getMessage());
+            return 0;
+        }
+        log.info("Migrating " + usernames.size() + " image folders");
+        long startedAt = System.nanoTime();
+        long before = migratedCount.sum();
+        // renames only, parallelism bounds the file system load whatever the thread kind
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, VirtualThreads.threadFactory("image-migration-", virtualThreads));
+        this.executor = executor;
+        for (String username : usernames) {
+            executor.execute(() -> migrate(username));
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long migrated = migratedCount.sum() - before;
+        log.info("Migrated " + migrated + " image folders in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)
+                + " ms, " + failedCount.sum() + " failed");
+        return migrated;
+    }
+
+    public long getMigratedCount() {
+        return migratedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public void destroy() {
+        ExecutorService executor = this.executor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void migrate(String username) {
+        try {
+            if (imageStorage.migrate(username)) {
+                migratedCount.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            failedCount.increment();
+            log.error("Could not migrate images of " + username + ": " + e.getMessage());
+        }
+    }
+}
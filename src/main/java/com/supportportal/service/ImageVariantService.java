@@ -0,0 +1,207 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.enumeration.ImageVariant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.supportportal.utility.constants.FileConstant.*;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/* Generates the downscaled variants of a stored profile image in the background. The original
+* is decoded once and each variant is scaled from the next larger one, so the cost is dominated
+* by the decode. Work runs on a small bounded pool: when it is full the upload is simply not
+* post-processed and the original keeps being served, the uploading request never waits.
+* Images with transparency become PNG, everything else JPEG. GIFs lose their animation.
+* The dimensions are read from the header before decoding, an image above maxPixels is refused
+* instead of allocating width x height x 4 bytes, a few KB of PNG can declare gigapixels */
+@Slf4j
+@Service
+public class ImageVariantService implements DisposableBean {
+
+    private static final String VARIANT_TEMP_PREFIX = ".variant-";
+    private static final String[] VARIANT_EXTENSIONS = {JPG_EXTENSION, PNG_EXTENSION};
+
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder generatedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public ImageVariantService(@Value("${supportportal.image.variants.pool-size:2}") int poolSize,
+                               @Value("${supportportal.image.variants.queue-capacity:100}") int queueCapacity,
+                               @Value("${supportportal.image.variants.max-pixels:25000000}") long maxPixels) {
+        this.maxPixels = maxPixels;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    // scaling competes with request threads, let those go first
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public void generateAsync(Path original) {
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(original);
+                } catch (IOException | RuntimeException e) {
+                    failedCount.increment();
+                    log.error("Could not generate image variants for " + original + ": " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            log.warn("Image variant queue full, serving the original only for " + original);
+        }
+    }
+
+    // returns the number of variants written
+    public int generate(Path original) throws IOException {
+        BufferedImage source = read(original);
+        boolean alpha = source.getColorModel().hasAlpha();
+        String extension = alpha ? PNG_EXTENSION : JPG_EXTENSION;
+        String hash = hashOf(original);
+        int written = 0;
+        BufferedImage previous = source;
+        ImageVariant[] variants = ImageVariant.values();
+        // largest first, every step scales the previous result down
+        for (int i = variants.length - 1; i >= 0; i--) {
+            ImageVariant variant = variants[i];
+            if (Math.max(source.getWidth(), source.getHeight()) <= variant.getSize()) {
+                // never upscale, the original already fits
+                continue;
+            }
+            previous = scale(previous, variant.getSize(), alpha);
+            Path target = original.resolveSibling(variant.fileName(hash, extension));
+            if (Files.exists(target)) {
+                continue;
+            }
+            if (!Files.exists(original)) {
+                // replaced by a newer upload meanwhile, its variants would be orphans
+                break;
+            }
+            Path tempFile = Files.createTempFile(original.getParent(), VARIANT_TEMP_PREFIX, null);
+            try {
+                if (!ImageIO.write(previous, alpha ? "png" : "jpeg", tempFile.toFile())) {
+                    throw new IOException("No image writer for " + extension);
+                }
+                Files.move(tempFile, target, ATOMIC_MOVE);
+                written++;
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        generatedCount.add(written);
+        return written;
+    }
+
+    // read from the file directly, a stream would be spooled to an ImageIO cache file first
+    private BufferedImage read(Path original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("No image reader for " + original.getFileName());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IOException(original.getFileName() + " has " + pixels + " pixels, the maximum is " + maxPixels);
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // the smallest stored variant covering requestedSize, the original when there is none
+    public Path bestFit(Path original, int requestedSize) {
+        String hash = hashOf(original);
+        for (ImageVariant variant : ImageVariant.values()) {
+            if (variant.getSize() < requestedSize) {
+                continue;
+            }
+            for (String extension : VARIANT_EXTENSIONS) {
+                Path candidate = original.resolveSibling(variant.fileName(hash, extension));
+                if (Files.isRegularFile(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return original;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getGeneratedCount() {
+        return generatedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static BufferedImage scale(BufferedImage image, int size, boolean alpha) {
+        // bilinear in one step skips source pixels on large reductions, halve first to keep the detail
+        while (Math.max(image.getWidth(), image.getHeight()) >= size * 4) {
+            image = resize(image, Math.max(1, image.getWidth() / 2), Math.max(1, image.getHeight() / 2), alpha);
+        }
+        double ratio = (double) size / Math.max(image.getWidth(), image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        return resize(image, width, height, alpha);
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage scaled = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static String hashOf(Path original) {
+        String fileName = original.getFileName().toString();
+        return fileName.substring(0, fileName.indexOf(DOT));
+    }
+}
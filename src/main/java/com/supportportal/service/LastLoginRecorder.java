@@ -0,0 +1,120 @@
+package com.supportportal.service;
+
+import com.supportportal.utility.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/* Write-behind store for last login timestamps. Successful logins are only recorded in memory,
+* the latest value per user wins, and pending values are flushed as batched UPDATEs on a schedule,
+* when batchSize users are pending, and on shutdown. Login no longer waits on a row write.
+* The user lookup cache is left alone: last login is only displayed, a cached copy is at most its
+* ttl behind, and invalidating every user who logged in would empty the cache on the login path */
+@Slf4j
+@Service
+public class LastLoginRecorder {
+
+    // the previous login moves to the display column, same as loadUserByUsername used to do
+    private static final String UPDATE_LAST_LOGIN =
+            "UPDATE users SET last_login_date_display = last_login_date, last_login_date = ? WHERE username = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final Map<String, Date> pendingLogins = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // at most one size triggered flush queued, reset once that flush starts
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ExecutorService flushExecutor;
+    private final LongSupplier clock;
+
+    @Autowired
+    public LastLoginRecorder(JdbcTemplate jdbcTemplate,
+                             @Value("${supportportal.login-recorder.batch-size:500}") int batchSize,
+                             @Value("${supportportal.threads.virtual:false}") boolean virtualThreads) {
+        this(jdbcTemplate, batchSize, virtualThreads, System::currentTimeMillis);
+    }
+
+    LastLoginRecorder(JdbcTemplate jdbcTemplate, int batchSize, boolean virtualThreads, LongSupplier clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.clock = clock;
+        // the flush is a JDBC batch, nothing CPU bound, so it may run on a virtual thread
+        this.flushExecutor = Executors.newSingleThreadExecutor(VirtualThreads.threadFactory("last-login-flush-", virtualThreads));
+    }
+
+    public void recordLogin(String username) {
+        pendingLogins.merge(username, new Date(clock.getAsLong()), (previous, latest) -> latest.after(previous) ? latest : previous);
+        if (pendingLogins.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            // size threshold reached, flush off the request thread
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    public int pendingCount() {
+        return pendingLogins.size();
+    }
+
+    @Scheduled(fixedDelayString = "${supportportal.login-recorder.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        flushScheduled.set(false);
+        try {
+            List<Object[]> batch = new ArrayList<>(Math.min(batchSize, pendingLogins.size()));
+            for (String username : pendingLogins.keySet()) {
+                // a login recorded after this remove simply waits for the next flush
+                Date loginDate = pendingLogins.remove(username);
+                if (loginDate != null) {
+                    batch.add(new Object[]{new Timestamp(loginDate.getTime()), username});
+                }
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeBatch(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_LOGIN, batch);
+            log.debug("Flushed last login date for {} users", batch.size());
+        } catch (DataAccessException e) {
+            log.error("Could not flush last login dates, retrying on next flush: " + e.getMessage());
+            // put the values back unless a newer login came in meanwhile
+            for (Object[] row : batch) {
+                Date loginDate = new Date(((Timestamp) row[0]).getTime());
+                pendingLogins.merge((String) row[1], loginDate, (current, failed) -> current.after(failed) ? current : failed);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+}
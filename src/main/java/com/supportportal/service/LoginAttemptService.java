@@ -1,53 +1,152 @@
 package com.supportportal.service;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.supportportal.metrics.jfr.LoginLockoutEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
 
+/* Failed login attempts per username over a sliding 15 minute window. Every username keeps
+* only the timestamps of its last MAXIMUM_ATTEMPT_NUMBER failures, so an entry has a fixed size.
+* The number of usernames is held at maximumSize so failures under random usernames cannot grow
+* the heap, but not by plain LRU: that would let a spray of fresh usernames push out the window of
+* an account being guessed. When a new username finds the map full, an eviction pass frees an
+* EVICTION_FRACTION of it taking expired windows first, then windows by their failure count,
+* fewest first. Windows that already lock their account only ever leave by expiring; should every
+* window be locking the new one is still admitted, every failure costs a bounded BCrypt check.
+* Writes for one username are serialized by the map's bin lock, reads are lock free */
 @Service
 public class LoginAttemptService {
     public static final int MAXIMUM_ATTEMPT_NUMBER = 5;
-    public static final int ATTEMPT_INCREMENT = 1;
-    private LoadingCache<String,Integer> loginAttemptCache;
-
-    public LoginAttemptService() {
-        super();
-        loginAttemptCache = CacheBuilder.newBuilder()
-                .expireAfterWrite(15, MINUTES)
-                .maximumSize(100)
-                .build(new CacheLoader<String, Integer>() {
-                    @Override
-                    public Integer load(String key) throws Exception {
-                        return 0;
-                    }
-                });
+    public static final long ATTEMPT_WINDOW_MILLIS = MINUTES.toMillis(15);
+    // map node, window, timestamp array and a short username on a 64 bit JVM with compressed oops
+    public static final long ESTIMATED_ENTRY_BYTES = 200;
+    private static final int EVICTION_FRACTION = 16;
+
+    private final long maximumSize;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, AttemptWindow> loginAttempts = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder lockoutCount = new LongAdder();
+
+    @Autowired
+    public LoginAttemptService(@Value("${supportportal.login-attempts.maximum-size:1000000}") long maximumSize) {
+        this(maximumSize, System::currentTimeMillis);
+    }
+
+    // the clock drives the window and the expiry
+    LoginAttemptService(long maximumSize, LongSupplier clock) {
+        this.maximumSize = maximumSize;
+        this.clock = clock;
     }
 
     public void evictUserFromCache(String username){
-        loginAttemptCache.invalidate(username);
+        loginAttempts.remove(username);
     }
 
     public void addUserToCache(String username){
-        int attempts = 0;
-        try {
-            attempts = ATTEMPT_INCREMENT + loginAttemptCache.get(username);
-        } catch (ExecutionException e) {
-            e.printStackTrace();
+        long now = clock.getAsLong();
+        if (!loginAttempts.containsKey(username) && loginAttempts.size() >= maximumSize) {
+            makeRoom(now - ATTEMPT_WINDOW_MILLIS);
         }
-        loginAttemptCache.put(username,attempts);
+        loginAttempts.compute(username, (key, window) -> {
+            AttemptWindow attemptWindow = window != null ? window : new AttemptWindow();
+            attemptWindow.record(now);
+            return attemptWindow;
+        });
     }
 
     public boolean hasExceededMaxAttempt(String username) {
+        AttemptWindow window = loginAttempts.get(username);
+        return window != null && window.countSince(clock.getAsLong() - ATTEMPT_WINDOW_MILLIS) >= MAXIMUM_ATTEMPT_NUMBER;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeExpiredAttempts() {
+        evictUpTo(clock.getAsLong() - ATTEMPT_WINDOW_MILLIS, 0, Long.MAX_VALUE);
+    }
+
+    // one pass at a time, callers arriving meanwhile insert without waiting
+    private void makeRoom(long cutoff) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            return loginAttemptCache.get(username)>= MAXIMUM_ATTEMPT_NUMBER;
-        } catch (ExecutionException e) {
-            e.printStackTrace();
+            long target = Math.max(1, maximumSize / EVICTION_FRACTION);
+            long evicted = 0;
+            for (int failures = 0; failures < MAXIMUM_ATTEMPT_NUMBER && evicted < target; failures++) {
+                evicted += evictUpTo(cutoff, failures, target - evicted);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    // removes at most limit windows with no more than maximumFailures inside the window
+    private long evictUpTo(long cutoff, int maximumFailures, long limit) {
+        long evicted = 0;
+        for (String username : loginAttempts.keySet()) {
+            if (evicted >= limit) {
+                break;
+            }
+            boolean[] removed = new boolean[1];
+            // rechecked under the bin lock, a failure recorded meanwhile keeps the window
+            loginAttempts.computeIfPresent(username, (key, window) -> {
+                removed[0] = window.countSince(cutoff) <= maximumFailures;
+                return removed[0] ? null : window;
+            });
+            if (removed[0]) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    // called by UserService when the window locks an account
+    public void recordLockout() {
+        lockoutCount.increment();
+        LoginLockoutEvent.emit(size());
+    }
+
+    public long getLockoutCount() {
+        return lockoutCount.sum();
+    }
+
+    public int size() {
+        return loginAttempts.size();
+    }
+
+    public long estimatedMemoryBytes() {
+        return size() * ESTIMATED_ENTRY_BYTES;
+    }
+
+    // ring of the last failure timestamps, next is only touched inside compute
+    private static final class AttemptWindow {
+        private final AtomicLongArray failures = new AtomicLongArray(MAXIMUM_ATTEMPT_NUMBER);
+        private int next;
+
+        void record(long timestamp) {
+            failures.set(next, timestamp);
+            next = (next + 1) % MAXIMUM_ATTEMPT_NUMBER;
+        }
+
+        int countSince(long cutoff) {
+            int count = 0;
+            for (int i = 0; i < MAXIMUM_ATTEMPT_NUMBER; i++) {
+                if (failures.get(i) >= cutoff) {
+                    count++;
+                }
+            }
+            return count;
         }
-        return false;
     }
 }
@@ -0,0 +1,151 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.enumeration.ImageFormat;
+import com.supportportal.exception.domain.ImageTooLargeException;
+import com.supportportal.exception.domain.NotAnImageFileException;
+import com.supportportal.metrics.jfr.ImageWriteEvent;
+import com.supportportal.service.interfaces.IImageStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static com.supportportal.utility.constants.FileConstant.*;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/* Stores uploaded profile images under a content-addressed name, <sha-256>.<ext>, in the user's
+* folder of the image storage.
+* The upload is streamed once into a temp file next to the target: the size cap is enforced, the real
+* format is sniffed from the magic bytes and the digest is computed on the way. The temp file is then
+* renamed into place atomically; re-uploading the same image reuses the stored file, and every
+* other image of the user is removed, so nothing is left behind */
+@Slf4j
+@Service
+public class ProfileImageService {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String TEMP_FILE_PREFIX = ".upload-";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final IImageStorage imageStorage;
+    private final long maxImageBytes;
+
+    public ProfileImageService(IImageStorage imageStorage, @Value("${supportportal.image.max-size-bytes:5242880}") long maxImageBytes) {
+        this.imageStorage = imageStorage;
+        this.maxImageBytes = maxImageBytes;
+    }
+
+    // returns the stored file name
+    public String store(String username, MultipartFile image) throws IOException, NotAnImageFileException, ImageTooLargeException {
+        ImageWriteEvent event = new ImageWriteEvent();
+        event.begin();
+        Path userFolder = imageStorage.writableUserFolder(username);
+        // same directory, so the final move is a rename on one file system
+        Path tempFile = Files.createTempFile(userFolder, TEMP_FILE_PREFIX, null);
+        long total = 0;
+        String extension = null;
+        boolean deduplicated = false;
+        try {
+            MessageDigest digest = newDigest();
+            byte[] header = new byte[ImageFormat.MAGIC_LENGTH];
+            int headerLength = 0;
+            try (InputStream inputStream = image.getInputStream(); OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    total += read;
+                    if (total > maxImageBytes) {
+                        throw new ImageTooLargeException(image.getOriginalFilename() + IMAGE_TOO_LARGE + maxImageBytes + " bytes");
+                    }
+                    if (headerLength < header.length) {
+                        int copied = Math.min(read, header.length - headerLength);
+                        System.arraycopy(buffer, 0, header, headerLength, copied);
+                        headerLength += copied;
+                    }
+                    digest.update(buffer, 0, read);
+                    outputStream.write(buffer, 0, read);
+                }
+            }
+            ImageFormat format = ImageFormat.sniff(header, headerLength);
+            if (format == null) {
+                throw new NotAnImageFileException(image.getOriginalFilename() + NOT_AN_IMAGE_FILE);
+            }
+            extension = format.getExtension();
+            String fileName = toHex(digest.digest()) + DOT + extension;
+            Path target = userFolder.resolve(fileName);
+            deduplicated = Files.exists(target);
+            if (!deduplicated) {
+                Files.move(tempFile, target, ATOMIC_MOVE);
+            }
+            deleteOtherImages(userFolder, fileName);
+            log.info(FILE_SAVED_IN_FILE_SYSTEM + fileName);
+            return fileName;
+        } finally {
+            Files.deleteIfExists(tempFile);
+            event.complete(total, extension, deduplicated);
+        }
+    }
+
+    // the stored original (never a variant), or the pre content-addressing <username>.jpg, or null
+    public Path currentImage(String username) throws IOException {
+        Path userFolder = imageStorage.userFolder(username);
+        if (userFolder == null) {
+            return null;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(userFolder)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().matches(CONTENT_ADDRESSED_FILE_NAME)) {
+                    return file;
+                }
+            }
+        }
+        Path legacyImage = userFolder.resolve(username + DOT + JPG_EXTENSION);
+        return Files.isRegularFile(legacyImage) ? legacyImage : null;
+    }
+
+    public Path userFolder(String username) {
+        return imageStorage.userFolder(username);
+    }
+
+    public void deleteImages(String username) throws IOException {
+        imageStorage.deleteUserFolder(username);
+    }
+
+    // keeps the image and its variants, which share the hash prefix, and in-flight temp files
+    private void deleteOtherImages(Path userFolder, String keep) throws IOException {
+        String hash = keep.substring(0, keep.indexOf(DOT));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(userFolder)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(hash) && !name.startsWith(DOT)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,132 @@
+package com.supportportal.service;
+
+import com.google.common.hash.Hashing;
+import com.supportportal.service.interfaces.IImageStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.supportportal.utility.constants.FileConstant.*;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/* Keeps each user's images under <root>/ab/cd/<username>, where ab and cd are the first two bytes
+* of the SHA-256 of the username. 65536 shards keep every directory small enough for fast lookups
+* and listings on ext4/xfs even with millions of users. Folders still in the flat legacy layout
+* (USER_FOLDER/<username>) are read in place and moved over on the next write or by
+* ImageStorageMigration. A move is a single rename, so readers see the folder in one place or
+* the other; they look at the sharded path again after missing the legacy one to cover the switch */
+@Slf4j
+@Service
+public class ShardedImageStorage implements IImageStorage {
+
+    private final Path root;
+    private final Path legacyRoot;
+
+    public ShardedImageStorage(@Value("${supportportal.image.root:${user.home}/supportportal/images/}") String root) {
+        this(Paths.get(root), Paths.get(USER_FOLDER));
+    }
+
+    ShardedImageStorage(Path root, Path legacyRoot) {
+        this.root = root.toAbsolutePath().normalize();
+        this.legacyRoot = legacyRoot.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public Path writableUserFolder(String username) throws IOException {
+        migrate(username);
+        Path userFolder = required(shardedFolder(username), username);
+        if (!Files.exists(userFolder)) {
+            Files.createDirectories(userFolder);
+            log.info(DIRECTORY_CREATED + userFolder);
+        }
+        return userFolder;
+    }
+
+    @Override
+    public Path userFolder(String username) {
+        Path sharded = shardedFolder(username);
+        if (sharded == null) {
+            return null;
+        }
+        if (Files.isDirectory(sharded)) {
+            return sharded;
+        }
+        Path legacy = legacyFolder(username);
+        if (Files.isDirectory(legacy)) {
+            return legacy;
+        }
+        // moved between the two checks
+        return Files.isDirectory(sharded) ? sharded : null;
+    }
+
+    @Override
+    public void deleteUserFolder(String username) throws IOException {
+        FileUtils.deleteDirectory(required(shardedFolder(username), username).toFile());
+        FileUtils.deleteDirectory(required(legacyFolder(username), username).toFile());
+    }
+
+    @Override
+    public boolean migrate(String username) throws IOException {
+        Path legacy = required(legacyFolder(username), username);
+        if (!Files.isDirectory(legacy)) {
+            return false;
+        }
+        Path sharded = required(shardedFolder(username), username);
+        Files.createDirectories(sharded.getParent());
+        try {
+            Files.move(legacy, sharded, ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // a concurrent upload or migration worker got there first
+            return false;
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            log.warn("Both layouts hold images for " + username + ", keeping " + sharded);
+            FileUtils.deleteDirectory(legacy.toFile());
+        } catch (AtomicMoveNotSupportedException e) {
+            throw new IOException(IMAGE_ROOT_ON_OTHER_FILE_SYSTEM + root, e);
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> legacyUsernames() throws IOException {
+        List<String> usernames = new ArrayList<>();
+        if (!Files.isDirectory(legacyRoot)) {
+            return usernames;
+        }
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(legacyRoot, Files::isDirectory)) {
+            for (Path folder : folders) {
+                usernames.add(folder.getFileName().toString());
+            }
+        }
+        return usernames;
+    }
+
+    // null for names that would leave the root, both layouts use the username as one path segment
+    private Path shardedFolder(String username) {
+        String hash = Hashing.sha256().hashString(username, StandardCharsets.UTF_8).toString();
+        return checked(root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)), username);
+    }
+
+    private Path legacyFolder(String username) {
+        return checked(legacyRoot, username);
+    }
+
+    private static Path checked(Path parent, String username) {
+        Path folder = parent.resolve(username).normalize();
+        return parent.equals(folder.getParent()) ? folder : null;
+    }
+
+    private static Path required(Path folder, String username) throws IOException {
+        if (folder == null) {
+            throw new IOException(INVALID_IMAGE_FOLDER + username);
+        }
+        return folder;
+    }
+}
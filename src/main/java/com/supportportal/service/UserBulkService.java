@@ -0,0 +1,201 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.User;
+import com.supportportal.entity.dto.BulkUpdateResult;
+import com.supportportal.entity.dto.BulkUserUpdate;
+import com.supportportal.entity.enumeration.BulkOperation;
+import com.supportportal.exception.domain.InvalidBulkUpdateException;
+import com.supportportal.security.AuthoritySet;
+import com.supportportal.security.enumeration.Role;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.supportportal.entity.enumeration.BulkOperation.*;
+import static com.supportportal.security.enumeration.Permission.USER_DELETE;
+import static com.supportportal.utility.constants.Constants.*;
+
+/* Lock, unlock, activate, deactivate or re-role many users with set-based UPDATEs: one statement
+* for a role filter, one per chunk of ids or usernames, instead of an updateUser round trip per
+* user. Authorities are derived from the role, so a role change is a single column. Everything
+* runs in one transaction; cached users are dropped once it commits, and unlocked users also get
+* their failed login attempts forgotten so the next attempt does not lock them again.
+* Callers only reach users whose role has no permission they lack themselves, never lock,
+* deactivate or re-role their own account, and re-roling needs user:delete and a target role
+* within the caller's own permissions, so user:update alone cannot escalate anyone */
+@Slf4j
+@Service
+@Transactional
+public class UserBulkService {
+
+    private static final String ID = "id";
+    private static final String USERNAME = "username";
+    private static final String ROLE = "role";
+    private static final String ACTIVE = "isActive";
+    private static final String NOT_LOCKED = "isNotLocked";
+    // operations that could shut callers out of their own account or change their own permissions
+    private static final Set<BulkOperation> SELF_EXCLUDED = EnumSet.of(LOCK, DEACTIVATE, CHANGE_ROLE);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final UserLookupCache userLookupCache;
+    private final LoginAttemptService loginAttemptService;
+    private final int chunkSize;
+
+    public UserBulkService(UserLookupCache userLookupCache, LoginAttemptService loginAttemptService,
+                           @Value("${supportportal.users.bulk.chunk-size:1000}") int chunkSize) {
+        this.userLookupCache = userLookupCache;
+        this.loginAttemptService = loginAttemptService;
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkUpdateResult update(BulkUserUpdate request, String callerUsername, AuthoritySet callerAuthorities)
+            throws InvalidBulkUpdateException {
+        BulkOperation operation = request.getOperation();
+        if (operation == null) {
+            throw new InvalidBulkUpdateException(MISSING_BULK_OPERATION);
+        }
+        if (operation == CHANGE_ROLE && !callerAuthorities.has(USER_DELETE)) {
+            throw new AccessDeniedException(NOT_ENOUGH_PERMISSION);
+        }
+        boolean byIds = request.getIds() != null && !request.getIds().isEmpty();
+        boolean byUsernames = request.getUsernames() != null && !request.getUsernames().isEmpty();
+        boolean byRole = StringUtils.isNotBlank(request.getCurrentRole());
+        if ((byIds ? 1 : 0) + (byUsernames ? 1 : 0) + (byRole ? 1 : 0) != 1) {
+            throw new InvalidBulkUpdateException(INVALID_BULK_SELECTION);
+        }
+        String targetRole = operation == CHANGE_ROLE ? role(request.getRole()) : null;
+        if (targetRole != null && !callerAuthorities.containsAll(Role.valueOf(targetRole).getAuthoritySet())) {
+            throw new AccessDeniedException(ROLE_ABOVE_CALLER + targetRole);
+        }
+        Caller caller = new Caller(SELF_EXCLUDED.contains(operation) ? callerUsername : null, reachableRoles(callerAuthorities));
+
+        int affected = 0;
+        if (byRole) {
+            affected = update(operation, targetRole, caller, ROLE, List.of(role(request.getCurrentRole())));
+        } else if (byIds) {
+            for (List<Long> chunk : chunks(request.getIds())) {
+                affected += update(operation, targetRole, caller, ID, chunk);
+            }
+        } else {
+            for (List<String> chunk : chunks(request.getUsernames())) {
+                affected += update(operation, targetRole, caller, USERNAME, chunk);
+            }
+        }
+        // before commit a concurrent lookup could cache the old row again
+        evictAfterCommit();
+        log.info(operation + " applied to " + affected + " users");
+        return new BulkUpdateResult(operation, affected);
+    }
+
+    private int update(BulkOperation operation, String targetRole, Caller caller, String selector, List<?> values) {
+        if (operation == UNLOCK) {
+            forgetLoginAttempts(caller, selector, values);
+        }
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<User> update = criteriaBuilder.createCriteriaUpdate(User.class);
+        Root<User> user = update.from(User.class);
+        switch (operation) {
+            case LOCK:
+                update.set(user.<Boolean>get(NOT_LOCKED), false);
+                break;
+            case UNLOCK:
+                update.set(user.<Boolean>get(NOT_LOCKED), true);
+                break;
+            case ACTIVATE:
+                update.set(user.<Boolean>get(ACTIVE), true);
+                break;
+            case DEACTIVATE:
+                update.set(user.<Boolean>get(ACTIVE), false);
+                break;
+            case CHANGE_ROLE:
+                update.set(user.<String>get(ROLE), targetRole);
+                break;
+        }
+        update.where(selection(criteriaBuilder, user, caller, selector, values));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    // the requested users, narrowed to the ones the caller may change
+    private Predicate selection(CriteriaBuilder criteriaBuilder, Root<User> user, Caller caller, String selector, List<?> values) {
+        Predicate selection = criteriaBuilder.and(user.get(selector).in(values), user.get(ROLE).in(caller.reachableRoles));
+        return caller.excludedUsername == null ? selection
+                : criteriaBuilder.and(selection, criteriaBuilder.notEqual(user.get(USERNAME), caller.excludedUsername));
+    }
+
+    // roles without a permission the caller lacks, users in any other role are left alone
+    private static List<String> reachableRoles(AuthoritySet callerAuthorities) {
+        return Arrays.stream(Role.values())
+                .filter(role -> callerAuthorities.containsAll(role.getAuthoritySet()))
+                .map(Role::name)
+                .collect(Collectors.toList());
+    }
+
+    // only unlock pays for this select, the attempt windows are keyed by username
+    private void forgetLoginAttempts(Caller caller, String selector, List<?> values) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<String> query = criteriaBuilder.createQuery(String.class);
+        Root<User> user = query.from(User.class);
+        query.select(user.get(USERNAME)).where(selection(criteriaBuilder, user, caller, selector, values));
+        for (String username : entityManager.createQuery(query).getResultList()) {
+            loginAttemptService.evictUserFromCache(username);
+        }
+    }
+
+    private void evictAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userLookupCache.invalidateAll();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userLookupCache.invalidateAll();
+            }
+        });
+    }
+
+    private <T> List<List<T>> chunks(List<T> values) {
+        List<T> distinct = values.stream().distinct().collect(Collectors.toList());
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            chunks.add(distinct.subList(from, Math.min(from + chunkSize, distinct.size())));
+        }
+        return chunks;
+    }
+
+    private static final class Caller {
+        // null when the operation may include the caller
+        private final String excludedUsername;
+        private final List<String> reachableRoles;
+
+        private Caller(String excludedUsername, List<String> reachableRoles) {
+            this.excludedUsername = excludedUsername;
+            this.reachableRoles = reachableRoles;
+        }
+    }
+
+    private String role(String role) throws InvalidBulkUpdateException {
+        try {
+            return Role.valueOf(StringUtils.trimToEmpty(role).toUpperCase()).name();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidBulkUpdateException(INVALID_ROLE + role);
+        }
+    }
+}
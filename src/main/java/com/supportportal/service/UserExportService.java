@@ -0,0 +1,117 @@
+package com.supportportal.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supportportal.entity.enumeration.ExportFormat;
+import com.supportportal.repository.UserRepository;
+import com.supportportal.repository.projection.UserExportRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/* Writes every user to the given stream row by row, straight off a forward-only database cursor.
+* Neither the rows nor the output are buffered as a whole, so heap use stays flat with table size */
+@Slf4j
+@Service
+public class UserExportService {
+
+    private static final String CSV_HEADER = "id,userId,firstName,lastName,username,email,role,active,notLocked,joinDate,lastLoginDate";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public UserExportService(UserRepository userRepository, ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    // the transaction keeps the cursor open, postgres only streams with autocommit off
+    @Transactional(readOnly = true)
+    public long exportUsers(OutputStream outputStream, ExportFormat format) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        try (Stream<UserExportRow> rows = userRepository.streamAllForExport()) {
+            Iterator<UserExportRow> iterator = rows.iterator();
+            if (format == ExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+                while (iterator.hasNext()) {
+                    writeCsv(writer, iterator.next());
+                    count++;
+                }
+            } else {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+                // rows are separated by the newline alone, not by Jackson's default space between root values
+                generator.setRootValueSeparator(null);
+                while (iterator.hasNext()) {
+                    writeJson(generator, iterator.next());
+                    count++;
+                }
+                generator.flush();
+            }
+        }
+        writer.flush();
+        log.info("Exported " + count + " users as " + format);
+        return count;
+    }
+
+    private void writeJson(JsonGenerator generator, UserExportRow row) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", row.getId());
+        generator.writeStringField("userId", row.getUserId());
+        generator.writeStringField("firstName", row.getFirstName());
+        generator.writeStringField("lastName", row.getLastName());
+        generator.writeStringField("username", row.getUsername());
+        generator.writeStringField("email", row.getEmail());
+        generator.writeStringField("role", row.getRole());
+        generator.writeBooleanField("active", Boolean.TRUE.equals(row.getActive()));
+        generator.writeBooleanField("notLocked", Boolean.TRUE.equals(row.getNotLocked()));
+        generator.writeStringField("joinDate", format(row.getJoinDate()));
+        generator.writeStringField("lastLoginDate", format(row.getLastLoginDate()));
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeCsv(Writer writer, UserExportRow row) throws IOException {
+        writer.write(String.valueOf(row.getId()));
+        writeCsvField(writer, row.getUserId());
+        writeCsvField(writer, row.getFirstName());
+        writeCsvField(writer, row.getLastName());
+        writeCsvField(writer, row.getUsername());
+        writeCsvField(writer, row.getEmail());
+        writeCsvField(writer, row.getRole());
+        writeCsvField(writer, String.valueOf(Boolean.TRUE.equals(row.getActive())));
+        writeCsvField(writer, String.valueOf(Boolean.TRUE.equals(row.getNotLocked())));
+        writeCsvField(writer, format(row.getJoinDate()));
+        writeCsvField(writer, format(row.getLastLoginDate()));
+        writer.write('\n');
+    }
+
+    // RFC 4180 quoting, only when the value needs it
+    private void writeCsvField(Writer writer, String value) throws IOException {
+        writer.write(',');
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private String format(Date date) {
+        return date == null ? null : date.toInstant().toString();
+    }
+}
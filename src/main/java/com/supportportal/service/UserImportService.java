@@ -0,0 +1,384 @@
+package com.supportportal.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supportportal.entity.User;
+import com.supportportal.entity.dto.UserImportRow;
+import com.supportportal.entity.enumeration.ExportFormat;
+import com.supportportal.repository.UserRepository;
+import com.supportportal.repository.projection.UserIdentity;
+import com.supportportal.security.enumeration.Role;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.supportportal.security.enumeration.Role.ROLE_USER;
+import static com.supportportal.utility.constants.Constants.*;
+import static com.supportportal.utility.constants.FileConstant.DEFAULT_USER_IMAGE_PATH;
+
+/* Creates users from an NDJSON or CSV stream in chunks. Per chunk: rows are validated, checked
+* for uniqueness with one set-based query, their generated passwords are hashed in parallel on
+* a dedicated pool (the login pool is left alone), and the chunk is inserted in one transaction
+* that Hibernate batches thanks to the pooled id sequence. A chunk that still hits a unique
+* constraint, because of a concurrent insert, is retried row by row. Progress after every chunk
+* and every failed row are written to the output as NDJSON as the import goes */
+@Slf4j
+@Service
+public class UserImportService implements DisposableBean {
+
+    private final UserRepository userRepository;
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final EmailService emailService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService hashExecutor;
+    private final int chunkSize;
+
+    public UserImportService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, EmailService emailService,
+                             ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                             @Value("${supportportal.import.chunk-size:1000}") int chunkSize,
+                             @Value("${supportportal.import.hash-parallelism:0}") int hashParallelism) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.emailService = emailService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        int threads = hashParallelism > 0 ? hashParallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hashExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "import-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // returns the number of users created
+    public long importUsers(InputStream inputStream, ExportFormat format, OutputStream outputStream) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        // resolved once, the request context is not available on the hashing threads
+        String profileImageBase = ServletUriComponentsBuilder.fromCurrentContextPath().path(DEFAULT_USER_IMAGE_PATH).toUriString();
+        Progress progress = new Progress(objectMapper.getFactory().createGenerator(
+                new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+        Set<String> seenUsernames = new HashSet<>();
+        Set<String> seenEmails = new HashSet<>();
+        Iterator<UserImportRow> rows = format == ExportFormat.CSV
+                ? new CsvRowIterator(new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)))
+                : objectMapper.readerFor(UserImportRow.class).readValues(inputStream);
+        List<PendingUser> chunk = new ArrayList<>(chunkSize);
+        long rowNumber = 0;
+        while (rows.hasNext()) {
+            UserImportRow row = rows.next();
+            rowNumber++;
+            String error = validate(row, seenUsernames, seenEmails);
+            if (error != null) {
+                progress.failed(rowNumber, row.getUsername(), error);
+                continue;
+            }
+            chunk.add(new PendingUser(rowNumber, row));
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, profileImageBase, progress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, profileImageBase, progress);
+        }
+        progress.done(rowNumber, System.currentTimeMillis() - startedAt);
+        log.info("Imported " + progress.created + " of " + rowNumber + " users in " + (System.currentTimeMillis() - startedAt) + " ms");
+        return progress.created;
+    }
+
+    private String validate(UserImportRow row, Set<String> seenUsernames, Set<String> seenEmails) {
+        if (StringUtils.isBlank(row.getUsername()) || StringUtils.isBlank(row.getEmail()) || !row.getEmail().contains("@")) {
+            return INVALID_IMPORT_ROW;
+        }
+        if (StringUtils.isNotBlank(row.getRole())) {
+            try {
+                Role.valueOf(row.getRole().trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return INVALID_ROLE + row.getRole();
+            }
+        }
+        boolean newUsername = seenUsernames.add(row.getUsername());
+        boolean newEmail = seenEmails.add(row.getEmail());
+        return newUsername && newEmail ? null : DUPLICATE_IN_IMPORT;
+    }
+
+    private void importChunk(List<PendingUser> chunk, String profileImageBase, Progress progress) throws IOException {
+        List<PendingUser> accepted = rejectExisting(chunk, progress);
+        hashPasswords(accepted, profileImageBase);
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(accepted));
+            progress.created += accepted.size();
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Import chunk hit a unique constraint, retrying its " + accepted.size() + " rows one by one");
+            for (PendingUser pendingUser : accepted) {
+                pendingUser.user.setId(null);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(pendingUser)));
+                    progress.created++;
+                } catch (DataIntegrityViolationException rowException) {
+                    progress.failed(pendingUser.rowNumber, pendingUser.row.getUsername(), uniqueViolation(rowException));
+                }
+            }
+        }
+        progress.chunkDone();
+    }
+
+    private List<PendingUser> rejectExisting(List<PendingUser> chunk, Progress progress) throws IOException {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (PendingUser pendingUser : chunk) {
+            usernames.add(pendingUser.row.getUsername());
+            emails.add(pendingUser.row.getEmail());
+        }
+        Set<String> takenUsernames = new HashSet<>();
+        Set<String> takenEmails = new HashSet<>();
+        for (UserIdentity existing : userRepository.findByUsernameInOrEmailIn(usernames, emails)) {
+            takenUsernames.add(existing.getUsername());
+            takenEmails.add(existing.getEmail());
+        }
+        List<PendingUser> accepted = new ArrayList<>(chunk.size());
+        for (PendingUser pendingUser : chunk) {
+            if (takenUsernames.contains(pendingUser.row.getUsername())) {
+                progress.failed(pendingUser.rowNumber, pendingUser.row.getUsername(), USERNAME_ALREADY_EXISTS);
+            } else if (takenEmails.contains(pendingUser.row.getEmail())) {
+                progress.failed(pendingUser.rowNumber, pendingUser.row.getUsername(), EMAIL_ALREADY_EXISTS);
+            } else {
+                accepted.add(pendingUser);
+            }
+        }
+        return accepted;
+    }
+
+    // BCrypt dominates the import, spread it over the cores
+    private void hashPasswords(List<PendingUser> accepted, String profileImageBase) {
+        List<Callable<Void>> tasks = new ArrayList<>(accepted.size());
+        for (PendingUser pendingUser : accepted) {
+            tasks.add(() -> {
+                pendingUser.build(passwordEncoder, profileImageBase);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> result : hashExecutor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void insert(List<PendingUser> pendingUsers) {
+        List<User> users = new ArrayList<>(pendingUsers.size());
+        for (PendingUser pendingUser : pendingUsers) {
+            users.add(pendingUser.user);
+        }
+        userRepository.saveAll(users);
+        for (PendingUser pendingUser : pendingUsers) {
+            emailService.sendNewPasswordEmail(pendingUser.row.getFirstName(), pendingUser.password, pendingUser.row.getEmail());
+        }
+        // surfaces unique violations here, translated, instead of at commit
+        userRepository.flush();
+    }
+
+    private String uniqueViolation(DataIntegrityViolationException e) {
+        String constraintName = e.getCause() instanceof ConstraintViolationException
+                ? StringUtils.lowerCase(((ConstraintViolationException) e.getCause()).getConstraintName()) : null;
+        if (StringUtils.contains(constraintName, USERNAME_UNIQUE_CONSTRAINT)) {
+            return USERNAME_ALREADY_EXISTS;
+        }
+        if (StringUtils.contains(constraintName, EMAIL_UNIQUE_CONSTRAINT)) {
+            return EMAIL_ALREADY_EXISTS;
+        }
+        return String.valueOf(e.getMostSpecificCause().getMessage());
+    }
+
+    @Override
+    public void destroy() {
+        hashExecutor.shutdownNow();
+    }
+
+    private static class PendingUser {
+        private final long rowNumber;
+        private final UserImportRow row;
+        private String password;
+        private User user;
+
+        PendingUser(long rowNumber, UserImportRow row) {
+            this.rowNumber = rowNumber;
+            this.row = row;
+        }
+
+        void build(BCryptPasswordEncoder passwordEncoder, String profileImageBase) {
+            password = RandomStringUtils.randomAlphanumeric(10);
+            user = User.builder()
+                    .userId(RandomStringUtils.randomNumeric(10))
+                    .firstName(row.getFirstName())
+                    .lastName(row.getLastName())
+                    .username(row.getUsername())
+                    .email(row.getEmail())
+                    .joinDate(new Date())
+                    .password(passwordEncoder.encode(password))
+                    .isActive(true)
+                    .isNotLocked(true)
+                    .role(StringUtils.isBlank(row.getRole()) ? ROLE_USER.name() : Role.valueOf(row.getRole().trim().toUpperCase()).name())
+                    .profileImageUrl(profileImageBase + row.getUsername())
+                    .build();
+        }
+    }
+
+    // NDJSON report: one line per failed row and per finished chunk, then a summary line
+    private static class Progress {
+        private final JsonGenerator generator;
+        private long created;
+        private long failed;
+        private long chunks;
+
+        Progress(JsonGenerator generator) {
+            this.generator = generator;
+            // one object per line, without Jackson's default space before every root value after the first
+            generator.setRootValueSeparator(null);
+        }
+
+        void failed(long rowNumber, String username, String error) throws IOException {
+            failed++;
+            generator.writeStartObject();
+            generator.writeNumberField("row", rowNumber);
+            generator.writeStringField("username", username);
+            generator.writeStringField("error", error);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        void chunkDone() throws IOException {
+            chunks++;
+            generator.writeStartObject();
+            generator.writeNumberField("chunk", chunks);
+            generator.writeNumberField("created", created);
+            generator.writeNumberField("failed", failed);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            // let the client see progress while the next chunk hashes
+            generator.flush();
+        }
+
+        void done(long rows, long millis) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("rows", rows);
+            generator.writeNumberField("created", created);
+            generator.writeNumberField("failed", failed);
+            generator.writeNumberField("millis", millis);
+            generator.writeBooleanField("done", true);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+        }
+    }
+
+    // RFC 4180 reader matching UserExportService's writer, columns are picked by header name
+    private static class CsvRowIterator implements Iterator<UserImportRow> {
+        private final Reader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private List<String> next;
+
+        CsvRowIterator(Reader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header != null) {
+                for (int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i).trim(), i);
+                }
+            }
+            next = readRecord();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public UserImportRow next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            List<String> record = next;
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new UserImportRow(field(record, "firstName"), field(record, "lastName"), field(record, "username"),
+                    field(record, "email"), field(record, "role"));
+        }
+
+        private String field(List<String> record, String name) {
+            Integer index = columns.get(name);
+            return index == null || index >= record.size() ? null : StringUtils.trimToNull(record.get(index));
+        }
+
+        // null at end of input, blank lines are skipped
+        private List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    if (fields.isEmpty() && field.length() == 0) {
+                        any = false;
+                        continue;
+                    }
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
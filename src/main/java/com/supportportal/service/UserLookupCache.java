@@ -0,0 +1,171 @@
+package com.supportportal.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.supportportal.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/* Read-through cache of users by username and by email in front of UserRepository.
+* Concurrent misses on one key share a single load, entries expire after ttl or once
+* passwordHashTtl is reached (whichever is shorter) as the cached user carries its hash.
+* Cached users are detached and shared, callers must not modify them; every write path
+* reloads from the repository and invalidates the user here once its transaction commits */
+@Component
+public class UserLookupCache {
+
+    private final boolean enabled;
+    private final Cache<String, User> usersByUsername;
+    private final Cache<String, User> usersByEmail;
+    private final ConcurrentMap<String, CompletableFuture<User>> usernameLoads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<User>> emailLoads = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserLookupCache(@Value("${supportportal.user-cache.enabled:true}") boolean enabled,
+                           @Value("${supportportal.user-cache.ttl-seconds:60}") long ttlSeconds,
+                           @Value("${supportportal.user-cache.password-hash-ttl-seconds:60}") long passwordHashTtlSeconds,
+                           @Value("${supportportal.user-cache.maximum-size:10000}") long maximumSize) {
+        this.enabled = enabled;
+        long expireAfterSeconds = Math.min(ttlSeconds, passwordHashTtlSeconds);
+        this.usersByUsername = newCache(expireAfterSeconds, maximumSize);
+        this.usersByEmail = newCache(expireAfterSeconds, maximumSize);
+    }
+
+    private static Cache<String, User> newCache(long expireAfterSeconds, long maximumSize) {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(expireAfterSeconds, SECONDS)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public User getByUsername(String username, Function<String, User> loader) {
+        return get(usersByUsername, usernameLoads, username, loader);
+    }
+
+    public User getByEmail(String email, Function<String, User> loader) {
+        return get(usersByEmail, emailLoads, email, loader);
+    }
+
+    /* Concurrent misses wait for the first caller's load. Guava's Cache.get(key, loader) would do
+    * the same, but it runs the loader inside a synchronized block, which pins a virtual thread to
+    * its carrier for the whole query. Waiting on the future parks instead */
+    private User get(Cache<String, User> cache, ConcurrentMap<String, CompletableFuture<User>> loads,
+                     String key, Function<String, User> loader) {
+        if (!enabled || key == null) {
+            return loader.apply(key);
+        }
+        User cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<User> load = new CompletableFuture<>();
+        CompletableFuture<User> running = loads.putIfAbsent(key, load);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            User user = loader.apply(key);
+            // misses are not cached, nor a load that an invalidate overtook
+            if (user != null) {
+                putIfStillLoading(cache, loads, key, load, user);
+            }
+            load.complete(user);
+            return user;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /* Invalidation removes the load before the entry, so the put happens under the map's lock
+    * for the key: either the invalidate has already removed the load and nothing is cached, or it
+    * runs after the put and its cache invalidate drops the entry again */
+    private static void putIfStillLoading(Cache<String, User> cache, ConcurrentMap<String, CompletableFuture<User>> loads,
+                                          String key, CompletableFuture<User> load, User user) {
+        loads.computeIfPresent(key, (k, current) -> {
+            if (current == load) {
+                cache.put(k, user);
+            }
+            return current;
+        });
+    }
+
+    private static User await(CompletableFuture<User> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void invalidate(User user) {
+        if (user != null) {
+            invalidate(user.getUsername(), user.getEmail());
+        }
+    }
+
+    public void invalidate(String username, String email) {
+        if (username != null) {
+            usernameLoads.remove(username);
+            usersByUsername.invalidate(username);
+        }
+        if (email != null) {
+            emailLoads.remove(email);
+            usersByEmail.invalidate(email);
+        }
+    }
+
+    // for changes where only the username is known, the email entry is found through the cached user
+    public void invalidateUsername(String username) {
+        User cached = usersByUsername.getIfPresent(username);
+        usernameLoads.remove(username);
+        usersByUsername.invalidate(username);
+        if (cached != null && cached.getEmail() != null) {
+            emailLoads.remove(cached.getEmail());
+            usersByEmail.invalidate(cached.getEmail());
+        }
+    }
+
+    public void invalidateAll() {
+        usernameLoads.clear();
+        emailLoads.clear();
+        usersByUsername.invalidateAll();
+        usersByEmail.invalidateAll();
+    }
+
+    public long usernameCacheSize() {
+        return usersByUsername.size();
+    }
+
+    public long emailCacheSize() {
+        return usersByEmail.size();
+    }
+
+    public CacheStats usernameStats() {
+        return usersByUsername.stats();
+    }
+
+    public CacheStats emailStats() {
+        return usersByEmail.stats();
+    }
+
+    public double hitRate() {
+        return usernameStats().plus(emailStats()).hitRate();
+    }
+}
@@ -2,91 +2,145 @@ package com.supportportal.service;
 
 import com.supportportal.entity.User;
 import com.supportportal.entity.UserPrinciple;
+import com.supportportal.entity.dto.UserPage;
+import com.supportportal.entity.enumeration.UserSortField;
 import com.supportportal.exception.domain.*;
+import com.supportportal.metrics.jfr.UserLookupEvent;
 import com.supportportal.repository.UserRepository;
+import com.supportportal.repository.projection.UserIdentity;
 import com.supportportal.security.enumeration.Role;
 import com.supportportal.service.interfaces.IUserService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.mail.MessagingException;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import static com.supportportal.security.enumeration.Role.ROLE_USER;
 import static com.supportportal.utility.constants.Constants.*;
 import static com.supportportal.utility.constants.FileConstant.*;
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
-import static org.springframework.util.MimeTypeUtils.*;
 
 @Slf4j
 @Service
-@Transactional
+// a failed unique insert marks the transaction rollback-only, roll back on the translated exceptions too
+@Transactional(rollbackFor = {UsernameExistException.class, EmailExistException.class})
 @Qualifier("UserDetailsService")
-public class UserService implements IUserService, UserDetailsService {
+public class UserService implements IUserService, UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
     private final BCryptPasswordEncoder passwordEncoder;
     private final LoginAttemptService loginAttemptService;
     private final EmailService emailService;
+    private final UserLookupCache userLookupCache;
+    private final ProfileImageService profileImageService;
+    private final ImageVariantService imageVariantService;
+
+    @Value("${supportportal.users.page.default-size:20}")
+    private int defaultPageSize;
+    @Value("${supportportal.users.page.max-size:100}")
+    private int maxPageSize;
 
     @Autowired
-    public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, LoginAttemptService loginAttemptService, EmailService emailService) {
+    public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, LoginAttemptService loginAttemptService,
+                       EmailService emailService, UserLookupCache userLookupCache, ProfileImageService profileImageService,
+                       ImageVariantService imageVariantService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.loginAttemptService = loginAttemptService;
         this.emailService = emailService;
+        this.userLookupCache = userLookupCache;
+        this.profileImageService = profileImageService;
+        this.imageVariantService = imageVariantService;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException{
-        Optional<User> user = Optional.ofNullable(userRepository.findUserByUsername(username));
+        UserLookupEvent event = new UserLookupEvent();
+        event.begin();
+        Optional<User> user = Optional.ofNullable(userLookupCache.getByUsername(username, key -> {
+            event.markDatabaseQueried();
+            return userRepository.findUserByUsername(key);
+        }));
+        event.complete(user.isPresent());
         if(user.isEmpty()) {
             log.error(NO_USER_FOUND_BY_USERNAME + username);
             throw new UsernameNotFoundException(NO_USER_FOUND_BY_USERNAME + username);
         }else{
-            validateLoginAttempt(user.get());
-            user.get().setLastLoginDateDisplay(user.get().getLastLoginDate());
-            user.get().setLastLoginDate(new Date());
-            userRepository.save(user.get());
-            UserPrinciple userPrinciple = new UserPrinciple(user.get());
+            // last login date is recorded by LastLoginRecorder once the password has actually been checked
+            UserPrinciple userPrinciple = new UserPrinciple(validateLoginAttempt(user.get()));
             log.info("Returning user by username: "+username);
             return userPrinciple;
         }
     }
 
-    private void validateLoginAttempt(User user){
+    // called by DaoAuthenticationProvider after a successful login when the stored hash
+    // has a different BCrypt cost than the calibrated one, newPassword is already encoded
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        // the user may be the shared cached instance, which is never modified
+        User user = ((UserPrinciple) userDetails).getUser().toBuilder().password(newPassword).build();
+        userRepository.updatePassword(user.getId(), newPassword);
+        invalidateAfterCommit(user.getUsername(), user.getEmail());
+        log.info("Re-hashed password with current cost for user: " + user.getUsername());
+        return new UserPrinciple(user);
+    }
+
+    // the user may come from UserLookupCache and be detached and shared, so a lock is written
+    // explicitly and a locked copy is returned instead of modifying it
+    private User validateLoginAttempt(User user){
         if(user.isNotLocked()){
             if(loginAttemptService.hasExceededMaxAttempt(user.getUsername())){
-                user.setNotLocked(false);
-            }
-            else {
-                user.setNotLocked(true);
+                userRepository.updateNotLocked(user.getId(), false);
+                invalidateAfterCommit(user.getUsername(), user.getEmail());
+                loginAttemptService.recordLockout();
+                return user.toBuilder().isNotLocked(false).build();
             }
         }else{
             loginAttemptService.evictUserFromCache(user.getUsername());
         }
+        return user;
+    }
+
+    /* Cached users are dropped once the change is visible to other transactions. Dropping them
+    * earlier lets a concurrent lookup cache the old committed row again until the ttl runs out.
+    * The keys are taken now, the user may be renamed before the commit */
+    private void invalidateAfterCommit(String username, String email) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userLookupCache.invalidate(username, email);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userLookupCache.invalidate(username, email);
+            }
+        });
     }
 
     @Override
@@ -105,13 +159,14 @@ public class UserService implements IUserService, UserDetailsService {
                 .isActive(true)
                 .isNotLocked(true)
                 .role(ROLE_USER.name())
-                .authorities(ROLE_USER.getAuthorities())
                 .profileImageUrl(getTemporaryProfilePicUrl(username))
                 .build();
 
         log.info("\nNew User Password: "+password);
-//        emailService.sendNewPasswordEmail(fName,password,email);
-        return userRepository.save(buildUser);
+        User savedUser = saveUnique(buildUser);
+        // queued in this transaction, rolled back with the user
+        emailService.sendNewPasswordEmail(fName, password, email);
+        return savedUser;
     }
 
     private String getTemporaryProfilePicUrl(String username) {
@@ -134,36 +189,51 @@ public class UserService implements IUserService, UserDetailsService {
     // going to be used when user is trying to create or update account.
     // Hence, being written slightly generic
     private User validateNewUsernameAndEmail(String currentUsername, String newUsername, String newEmail) throws UserNotFoundException, UsernameExistException, EmailExistException {
-
-        Optional<User> userByNewUsername = Optional.ofNullable(findByUsername(newUsername));
-        Predicate<User> checkUserById = user -> !user.getId().equals(userByNewUsername.get().getId());
-
-        Optional<User> userByNewEmail = Optional.ofNullable(findByEmail(newEmail));
-        Predicate<User> checkEmailById = user -> !user.getId().equals(userByNewEmail.get().getId());
-
+        User currentUser = null;
         if(StringUtils.isNotBlank(currentUsername)){
-            Optional<User> currentUser = Optional.ofNullable(findByUsername(currentUsername));
-
-            if(currentUser.isEmpty())
+            // the entity about to be changed, loaded fresh rather than from the lookup cache
+            currentUser = userRepository.findUserByUsername(currentUsername);
+            if(currentUser == null)
                 throw new UserNotFoundException(NO_USER_FOUND_BY_USERNAME +currentUsername);
+        }
+        if(newUsername == null && newEmail == null){
+            return currentUser;
+        }
 
-            if(userByNewUsername.isPresent() && checkUserById.test(currentUser.get())){
-                throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
+        // one indexed lookup for both, only id/username/email are selected
+        boolean usernameTaken = false;
+        boolean emailTaken = false;
+        for(UserIdentity existing : userRepository.findByUsernameOrEmail(newUsername, newEmail)){
+            if(currentUser != null && existing.getId().equals(currentUser.getId())){
+                continue;
             }
+            usernameTaken |= StringUtils.equals(existing.getUsername(), newUsername);
+            emailTaken |= StringUtils.equals(existing.getEmail(), newEmail);
+        }
+        if(usernameTaken){
+            throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
+        }
+        if(emailTaken){
+            throw new EmailExistException(EMAIL_ALREADY_EXISTS);
+        }
+        return currentUser;
+    }
 
-            if(userByNewEmail.isPresent() && checkEmailById.test(currentUser.get())){
-                throw new EmailExistException(EMAIL_ALREADY_EXISTS);
-            }
-            return currentUser.get();
-        }else{
-            if(userByNewUsername.isPresent()){
+    // the unique constraints close the gap between the check above and the insert,
+    // a concurrent registration of the same username/email surfaces as the same exceptions
+    private User saveUnique(User user) throws UsernameExistException, EmailExistException {
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            String constraintName = e.getCause() instanceof ConstraintViolationException
+                    ? StringUtils.lowerCase(((ConstraintViolationException) e.getCause()).getConstraintName()) : null;
+            if (StringUtils.contains(constraintName, USERNAME_UNIQUE_CONSTRAINT)) {
                 throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
             }
-
-            if(userByNewEmail.isPresent()){
+            if (StringUtils.contains(constraintName, EMAIL_UNIQUE_CONSTRAINT)) {
                 throw new EmailExistException(EMAIL_ALREADY_EXISTS);
             }
-            return null;
+            throw e;
         }
     }
 
@@ -173,7 +243,54 @@ public class UserService implements IUserService, UserDetailsService {
     }
 
     @Override
-    public User addNewUser(String fName, String lName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
+    @Transactional(readOnly = true)
+    public UserPage getUsers(String cursor, int pageSize, UserSortField sortField) throws InvalidCursorException {
+        int size = pageSize <= 0 ? defaultPageSize : Math.min(pageSize, maxPageSize);
+        // a cursor carries its own sort field, the requested one only applies to the first page
+        String[] position = StringUtils.isBlank(cursor) ? new String[]{sortField.name(), "0", EMPTY} : decodeCursor(cursor);
+        UserSortField sort = UserSortField.valueOf(position[0]);
+        Long afterId = Long.valueOf(position[1]);
+        // one extra row tells whether there is a next page without a count query
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<User> users;
+        switch (sort) {
+            case USERNAME:
+                users = userRepository.findPageOrderByUsername(position[2], afterId, limit);
+                break;
+            case EMAIL:
+                users = userRepository.findPageOrderByEmail(position[2], afterId, limit);
+                break;
+            default:
+                users = userRepository.findPageOrderById(afterId, limit);
+        }
+        if (users.size() <= size) {
+            return new UserPage(users, null);
+        }
+        List<User> page = users.subList(0, size);
+        return new UserPage(page, encodeCursor(sort, page.get(size - 1)));
+    }
+
+    private String encodeCursor(UserSortField sort, User last) {
+        String value = sort == UserSortField.USERNAME ? last.getUsername() : sort == UserSortField.EMAIL ? last.getEmail() : EMPTY;
+        String position = sort.name() + CURSOR_SEPARATOR + last.getId() + CURSOR_SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) throws InvalidCursorException {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // the value is last, so a separator inside a username or email stays part of it
+            String[] parts = position.split(Pattern.quote(CURSOR_SEPARATOR), 3);
+            UserSortField.valueOf(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts.length == 3 ? parts : new String[]{parts[0], parts[1], EMPTY};
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidCursorException(INVALID_CURSOR + cursor);
+        }
+    }
+
+    @Override
+    public User addNewUser(String fName, String lName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException, ImageTooLargeException {
         validateNewUsernameAndEmail(EMPTY, username, email);
         String password = generatePassword();
         String encodedPassword = encodedPassword(password);
@@ -188,37 +305,30 @@ public class UserService implements IUserService, UserDetailsService {
                 .isActive(true)
                 .isNotLocked(true)
                 .role(getRoleEnumName(role).name())
-                .authorities(getRoleEnumName(role).getAuthorities())
                 .profileImageUrl(getTemporaryProfilePicUrl(username))
                 .build();
 
-        userRepository.save(buildUser);
+        saveUnique(buildUser);
         saveProfileImage(buildUser, profileImage);
         log.info("New user password: " + password);
         return buildUser;
     }
 
-    private void saveProfileImage(User user, MultipartFile profileImage) throws IOException, NotAnImageFileException {
+    private void saveProfileImage(User user, MultipartFile profileImage) throws IOException, NotAnImageFileException, ImageTooLargeException {
         if (profileImage != null) {
-            if(!Arrays.asList(IMAGE_JPEG_VALUE, IMAGE_PNG_VALUE, IMAGE_GIF_VALUE).contains(profileImage.getContentType())) {
-                throw new NotAnImageFileException(profileImage.getOriginalFilename() + NOT_AN_IMAGE_FILE);
-            }
-            Path userFolder = Paths.get(USER_FOLDER + user.getUsername()).toAbsolutePath().normalize();
-            if(!Files.exists(userFolder)) {
-                Files.createDirectories(userFolder);
-                log.info(DIRECTORY_CREATED + userFolder);
-            }
-            Files.deleteIfExists(Paths.get(userFolder + user.getUsername() + DOT + JPG_EXTENSION));
-            Files.copy(profileImage.getInputStream(), userFolder.resolve(user.getUsername() + DOT + JPG_EXTENSION), REPLACE_EXISTING);
-            user.setProfileImageUrl(setProfileImageUrl(user.getUsername()));
+            String fileName = profileImageService.store(user.getUsername(), profileImage);
+            // resized copies are made in the background, the original is served until they exist
+            imageVariantService.generateAsync(profileImageService.userFolder(user.getUsername()).resolve(fileName));
+            user.setProfileImageUrl(setProfileImageUrl(user.getUsername(), fileName));
             userRepository.save(user);
-            log.info(FILE_SAVED_IN_FILE_SYSTEM + profileImage.getOriginalFilename());
+            invalidateAfterCommit(user.getUsername(), user.getEmail());
         }
     }
 
-    private String setProfileImageUrl(String username) {
+    // content-addressed, the URL changes whenever the image does
+    private String setProfileImageUrl(String username, String fileName) {
         return ServletUriComponentsBuilder
-                .fromCurrentContextPath().path(USER_IMAGE_PATH+username).toUriString();
+                .fromCurrentContextPath().path(USER_IMAGE_PATH + username + FORWARD_SLASH + fileName).toUriString();
     }
 
     private Role getRoleEnumName(String role) {
@@ -227,10 +337,11 @@ public class UserService implements IUserService, UserDetailsService {
 
 
     @Override
-    public User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
+    public User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException, ImageTooLargeException {
         Optional<User> validUser = Optional.ofNullable(validateNewUsernameAndEmail(currentUsername, newUsername, newEmail));
         if(validUser.isPresent()){
             User currentUser = validUser.get();
+            invalidateAfterCommit(currentUser.getUsername(), currentUser.getEmail());
             currentUser.setFirstName(newFirstName);
             currentUser.setLastName(newLastName);
             currentUser.setUsername(newUsername);
@@ -238,8 +349,8 @@ public class UserService implements IUserService, UserDetailsService {
             currentUser.setActive(isActive);
             currentUser.setNotLocked(isNonLocked);
             currentUser.setRole(getRoleEnumName(role).name());
-            currentUser.setAuthorities(getRoleEnumName(role).getAuthorities());
-            userRepository.save(currentUser);
+            saveUnique(currentUser);
+            invalidateAfterCommit(currentUser.getUsername(), currentUser.getEmail());
             saveProfileImage(currentUser, profileImage);
             return currentUser;
         }
@@ -249,9 +360,9 @@ public class UserService implements IUserService, UserDetailsService {
     @Override
     public void deleteUser(String username) throws IOException {
         User user = userRepository.findUserByUsername(username);
-        Path userFolder = Paths.get(USER_FOLDER + user.getUsername()).toAbsolutePath().normalize();
-        FileUtils.deleteDirectory(new File(userFolder.toString()));
+        profileImageService.deleteImages(user.getUsername());
         userRepository.deleteById(user.getId());
+        invalidateAfterCommit(user.getUsername(), user.getEmail());
     }
 
     @Override
@@ -263,12 +374,13 @@ public class UserService implements IUserService, UserDetailsService {
         String password = generatePassword();
         user.setPassword(encodedPassword(password));
         userRepository.save(user);
+        invalidateAfterCommit(user.getUsername(), user.getEmail());
         log.info("New user password: " + password);
-        //emailService.sendNewPasswordEmail(user.getFirstName(), password, user.getEmail());
+        emailService.sendNewPasswordEmail(user.getFirstName(), password, user.getEmail());
     }
 
     @Override
-    public User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
+    public User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException, ImageTooLargeException {
         User user = validateNewUsernameAndEmail(username, null, null);
         saveProfileImage(user, profileImage);
         return user;
@@ -276,11 +388,11 @@ public class UserService implements IUserService, UserDetailsService {
 
     @Override
     public User findByUsername(String username) {
-        return userRepository.findUserByUsername(username);
+        return userLookupCache.getByUsername(username, userRepository::findUserByUsername);
     }
 
     @Override
     public User findByEmail(String email) {
-        return userRepository.findUserByEmail(email);
+        return userLookupCache.getByEmail(email, userRepository::findUserByEmail);
     }
 }
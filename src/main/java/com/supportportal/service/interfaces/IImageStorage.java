@@ -0,0 +1,22 @@
+package com.supportportal.service.interfaces;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public interface IImageStorage {
+
+    // folder new images of the user are written to, created when missing
+    Path writableUserFolder(String username) throws IOException;
+
+    // folder currently holding the user's images, null when the user has none or the name is not a valid folder
+    Path userFolder(String username);
+
+    void deleteUserFolder(String username) throws IOException;
+
+    // moves the user's images into the current layout, false when there was nothing to move
+    boolean migrate(String username) throws IOException;
+
+    // every user folder still in a layout other than the current one
+    List<String> legacyUsernames() throws IOException;
+}
@@ -1,6 +1,8 @@
 package com.supportportal.service.interfaces;
 
 import com.supportportal.entity.User;
+import com.supportportal.entity.dto.UserPage;
+import com.supportportal.entity.enumeration.UserSortField;
 import com.supportportal.exception.domain.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -14,17 +16,19 @@ public interface IUserService {
 
     List<User> getUsers();
 
+    UserPage getUsers(String cursor, int pageSize, UserSortField sortField) throws InvalidCursorException;
+
     User findByUsername(String username);
 
     User findByEmail(String email);
 
-    User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException;
+    User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException, ImageTooLargeException;
 
-    User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException;
+    User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException, ImageTooLargeException;
 
     void deleteUser(String username) throws IOException;
 
     void resetPassword(String email) throws MessagingException, EmailNotFoundException;
 
-    User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException;
+    User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException, ImageTooLargeException;
 }
@@ -7,6 +7,9 @@ public class Constants {
 
     public static final String EMAIL_ALREADY_EXISTS = "Email already exists";
     public static final String USERNAME_ALREADY_EXISTS = "Username already exists";
+    // lower case, as postgres reports constraint names folded to lower case
+    public static final String USERNAME_UNIQUE_CONSTRAINT = "uk_users_username";
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_users_email";
     public static final String NO_USER_FOUND_BY_USERNAME = "No User found by Username: ";
     public static final String ACCOUNT_LOCKED = "Your account has been locked. Please contact administration";
     public static final String METHOD_IS_NOT_ALLOWED = "This request method is not allowed on this endpoint. Please send a '%s' request";
@@ -14,7 +17,21 @@ public class Constants {
     public static final String INCORRECT_CREDENTIALS = "Username / password incorrect. Please try again";
     public static final String ACCOUNT_DISABLED = "Your account has been disabled. If this is an error, please contact administration";
     public static final String ERROR_PROCESSING_FILE = "Error occurred while processing file";
+    public static final String IMAGE_UPLOAD_TOO_LARGE = "The uploaded file is too large";
     public static final String NOT_ENOUGH_PERMISSION = "You do not have enough permission";
     public static final String ERROR_PATH = "/error";
     public static final String NO_URL_MAPPING = "There is no mapping for this URL";
+    // sequences named like the serial ones postgres created for the former IDENTITY columns
+    public static final String USER_ID_SEQUENCE = "users_id_seq";
+    public static final String EMAIL_OUTBOX_ID_SEQUENCE = "email_outbox_id_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+    public static final String INVALID_IMPORT_ROW = "Username and a valid email are required";
+    public static final String INVALID_ROLE = "Unknown role: ";
+    public static final String DUPLICATE_IN_IMPORT = "Username or email appears more than once in the import";
+    public static final String INVALID_BULK_SELECTION = "Select users by exactly one of ids, usernames or currentRole";
+    public static final String MISSING_BULK_OPERATION = "An operation is required";
+    public static final String ROLE_ABOVE_CALLER = "Cannot grant a role with permissions you do not have: ";
+    public static final String CURSOR_SEPARATOR = "|";
+    public static final String INVALID_CURSOR = "Invalid page cursor: ";
+    public static final String LOGIN_CAPACITY_EXCEEDED = "Too many login requests at the moment. Please try again shortly";
 }
@@ -3,12 +3,28 @@ package com.supportportal.utility.constants;
 public class FileConstant {
     public static final String USER_IMAGE_PATH = "/user/image/";
     public static final String JPG_EXTENSION = "jpg";
+    public static final String PNG_EXTENSION = "png";
     public static final String USER_FOLDER = System.getProperty("user.home") + "/supportportal/user/";
+    public static final String INVALID_IMAGE_FOLDER = "Not a valid image folder name: ";
+    public static final String IMAGE_ROOT_ON_OTHER_FILE_SYSTEM = "Image root must be on the same file system as " + USER_FOLDER + ", cannot move folders to ";
     public static final String DIRECTORY_CREATED = "Created directory for: ";
     public static final String DEFAULT_USER_IMAGE_PATH = "/user/image/profile/";
     public static final String FILE_SAVED_IN_FILE_SYSTEM = "Saved file in file system by name: ";
     public static final String DOT = ".";
     public static final String FORWARD_SLASH = "/";
     public static final String NOT_AN_IMAGE_FILE = " is not an image file. Please upload an image file";
+    public static final String IMAGE_TOO_LARGE = " is too large, the maximum image size is ";
     public static final String TEMP_PROFILE_IMAGE_BASE_URL = "https://robohash.org/";
+    // <sha-256 hex>.<ext>, the name changes with the content so such URLs can be cached forever
+    public static final String CONTENT_ADDRESSED_FILE_NAME = "[0-9a-f]{64}\\.[a-z]{3,4}";
+    // <sha-256 hex>-<size>.<ext>, downscaled copies of a content-addressed image
+    public static final String IMAGE_VARIANT_FILE_NAME = "[0-9a-f]{64}-[0-9]+\\.[a-z]{3,4}";
+    public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    public static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+    public static final String BYTES_RANGE_UNIT = "bytes";
+    // tomcat serves the file itself with sendfile when these request attributes are set
+    public static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    public static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    public static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    public static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
 }
@@ -0,0 +1,35 @@
+package com.supportportal.utility.constants;
+
+// meter names and tags, tag values always come from small fixed sets and never from user input
+public class MetricConstant {
+
+    private MetricConstant() {
+    }
+
+    public static final String OUTCOME_TAG = "outcome";
+    public static final String TOKEN_VALID = "valid";
+    public static final String TOKEN_INVALID = "invalid";
+    public static final String TOKEN_EXPIRED = "expired";
+    public static final String CACHE_TAG = "cache";
+    public static final String JWT_VERIFY_TIMER = "supportportal.jwt.verify";
+    public static final String LOGIN_TIMER = "supportportal.login";
+    public static final String PASSWORD_HASH_TIMER = "supportportal.password.hash";
+    public static final String PASSWORD_QUEUE_WAIT_TIMER = "supportportal.password.queue.wait";
+    public static final String PASSWORD_QUEUE_DEPTH = "supportportal.password.queue.depth";
+    public static final String PASSWORD_REJECTED = "supportportal.password.rejected";
+    public static final String LOGIN_ATTEMPT_USERS = "supportportal.login.attempts.users";
+    public static final String LOGIN_ATTEMPT_MEMORY = "supportportal.login.attempts.memory";
+    public static final String LOCKOUTS = "supportportal.login.lockouts";
+    public static final String CACHE_SIZE = "supportportal.cache.size";
+    public static final String CACHE_HITS = "supportportal.cache.hits";
+    public static final String CACHE_MISSES = "supportportal.cache.misses";
+    public static final String CACHE_EVICTIONS = "supportportal.cache.evictions";
+    public static final String EMAIL_SEND_TIMER = "supportportal.email.send";
+    public static final String EMAIL_BACKLOG = "supportportal.email.backlog";
+    public static final String EMAIL_ABANDONED = "supportportal.email.abandoned";
+    public static final String EMAIL_CONNECTIONS = "supportportal.email.connections";
+    public static final String IMAGE_VARIANT_QUEUE_DEPTH = "supportportal.image.variants.queue.depth";
+    public static final String IMAGE_VARIANTS_GENERATED = "supportportal.image.variants.generated";
+    public static final String IMAGE_VARIANTS_REJECTED = "supportportal.image.variants.rejected";
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+}
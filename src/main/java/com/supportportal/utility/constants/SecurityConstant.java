@@ -10,6 +10,7 @@ public class SecurityConstant {
     public static final String JWT_TOKEN_HEADER = "Jwt-Token";
     public static final String TOKEN_CANNOT_BE_VERIFIED = "Token could not be Verified";
     public static final String AUTHORITIES = "authorities";
+    public static final String PERMISSIONS = "perms"; // compact form of AUTHORITIES, a Permission bitmask
     public static final String GET_LISTS_LLC = "Get Lists, LLC";
     public static final String GET_LISTS_ADMINISTRATION = "User Management Portal";
     public static final String FORBIDDEN_MESSAGE = "Please login to access this page";
@@ -0,0 +1,27 @@
+-- users.username and users.email get the named unique constraints UserService translates into
+-- UsernameExistException/EmailExistException. Run before starting that version, the constraints can only be
+-- added once existing duplicates are gone. The oldest row (lowest id) keeps the name, later duplicates are
+-- renamed with their id appended and locked so an admin can merge or delete them, no account is removed.
+BEGIN;
+LOCK TABLE users IN SHARE ROW EXCLUSIVE MODE;
+
+UPDATE users SET username = username || '.duplicate-' || id, is_not_locked = false
+WHERE id IN (SELECT id FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY username ORDER BY id) AS position
+                             FROM users WHERE username IS NOT NULL) ranked
+             WHERE position > 1);
+
+UPDATE users SET email = email || '.duplicate-' || id, is_not_locked = false
+WHERE id IN (SELECT id FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY email ORDER BY id) AS position
+                             FROM users WHERE email IS NOT NULL) ranked
+             WHERE position > 1);
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_users_username') THEN
+        ALTER TABLE users ADD CONSTRAINT uk_users_username UNIQUE (username);
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_users_email') THEN
+        ALTER TABLE users ADD CONSTRAINT uk_users_email UNIQUE (email);
+    END IF;
+END $$;
+COMMIT;
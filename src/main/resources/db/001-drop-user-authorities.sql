@@ -0,0 +1,4 @@
+-- User.authorities is derived from users.role since the element collection was removed.
+-- Existing rows stay valid without changes, as every row already carries its role.
+-- Run once all instances are on the new version, the table is no longer read or written.
+DROP TABLE IF EXISTS user_authorities;
@@ -0,0 +1,17 @@
+-- Outbox for emails queued by UserService, drained by EmailDispatcher.
+-- ddl-auto creates the same table, this script is for databases managed by hand.
+-- body can carry a generated password: it is written AES-GCM encrypted ("enc:v1:" prefix, key from
+-- supportportal.mail.outbox-secret), the row is deleted once sent and the body cleared when it FAILED.
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id              BIGSERIAL PRIMARY KEY,
+    recipient       VARCHAR(255),
+    cc              VARCHAR(255),
+    subject         VARCHAR(255),
+    body            TEXT,
+    status          VARCHAR(255),
+    attempts        INTEGER NOT NULL DEFAULT 0,
+    created_at      TIMESTAMP,
+    next_attempt_at TIMESTAMP,
+    last_error      VARCHAR(255)
+);
+CREATE INDEX IF NOT EXISTS ix_email_outbox_status_next_attempt ON email_outbox (status, next_attempt_at);
@@ -0,0 +1,11 @@
+-- users.id and email_outbox.id now come from pooled sequences (allocationSize 50) instead of IDENTITY,
+-- so Hibernate can batch INSERTs. The serial sequences postgres created are reused, only their increment
+-- changes. Each nextval hands out the block (value - 49 .. value), restart past the highest existing id.
+-- Run before starting the new version, Hibernate refuses a sequence whose increment does not match.
+CREATE SEQUENCE IF NOT EXISTS users_id_seq;
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+SELECT setval('users_id_seq', (SELECT COALESCE(MAX(id), 0) FROM users) + 50, false);
+
+CREATE SEQUENCE IF NOT EXISTS email_outbox_id_seq;
+ALTER SEQUENCE email_outbox_id_seq INCREMENT BY 50;
+SELECT setval('email_outbox_id_seq', (SELECT COALESCE(MAX(id), 0) FROM email_outbox) + 50, false);
@@ -0,0 +1,195 @@
+package com.supportportal.controller;
+
+import com.supportportal.entity.User;
+import com.supportportal.entity.dto.UserDTO;
+import com.supportportal.entity.enumeration.ExportFormat;
+import com.supportportal.exception.domain.LoginCapacityExceededException;
+import com.supportportal.repository.UserRepository;
+import com.supportportal.security.JwtTokenProvider;
+import com.supportportal.security.VerifiedTokenCache;
+import com.supportportal.service.EmailService;
+import com.supportportal.service.ImageVariantService;
+import com.supportportal.service.LoginAttemptService;
+import com.supportportal.service.ProfileImageService;
+import com.supportportal.service.UserExportService;
+import com.supportportal.service.UserLookupCache;
+import com.supportportal.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Date;
+import java.util.List;
+
+import static com.supportportal.security.enumeration.Role.ROLE_USER;
+import static com.supportportal.utility.constants.Constants.INVALID_CURSOR;
+import static com.supportportal.utility.constants.Constants.LOGIN_CAPACITY_EXCEEDED;
+import static com.supportportal.utility.constants.MetricConstant.LOGIN_TIMER;
+import static com.supportportal.utility.constants.MetricConstant.OUTCOME_TAG;
+import static com.supportportal.utility.constants.SecurityConstant.JWT_TOKEN_HEADER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.*;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpHeaders.VARY;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AppControllerTest {
+
+    private static final String USERNAME = "alice";
+    private static final String PASSWORD = "Aq3mZx81Lp";
+
+    private UserRepository userRepository;
+    private AppController appController;
+    private User user;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+        user = User.builder()
+                .id(1L)
+                .userId("0123456789")
+                .username(USERNAME)
+                .email(USERNAME + "@supportportal.com")
+                .password(passwordEncoder.encode(PASSWORD))
+                .joinDate(new Date())
+                .isActive(true)
+                .isNotLocked(true)
+                .role(ROLE_USER.name())
+                .build();
+
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findUserByUsername(USERNAME)).thenReturn(user);
+        UserService userService = new UserService(userRepository, passwordEncoder, new LoginAttemptService(100_000),
+                mock(EmailService.class), new UserLookupCache(true, 60, 60, 100),
+                mock(ProfileImageService.class), mock(ImageVariantService.class));
+
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setUserDetailsService(userService);
+        authenticationProvider.setPasswordEncoder(passwordEncoder);
+
+        appController = new AppController();
+        ReflectionTestUtils.setField(appController, "userService", userService);
+        ReflectionTestUtils.setField(appController, "authenticationManager", new ProviderManager(authenticationProvider));
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(appController, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(appController, "jwtTokenProvider",
+                new JwtTokenProvider("test-secret", new VerifiedTokenCache(false, 1), false));
+    }
+
+    @Test
+    void loginLoadsUserOnce() {
+        ResponseEntity<User> response = appController.login(UserDTO.builder().username(USERNAME).password(PASSWORD).build());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(user, response.getBody());
+        assertNotNull(response.getHeaders().getFirst(JWT_TOKEN_HEADER));
+        // one round trip to the repository per login, no follow-up findByUsername or save
+        verify(userRepository, times(1)).findUserByUsername(USERNAME);
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void loginRecordsOutcomeWithoutUsername() {
+        appController.login(UserDTO.builder().username(USERNAME).password(PASSWORD).build());
+        assertThrows(BadCredentialsException.class,
+                () -> appController.login(UserDTO.builder().username(USERNAME).password("wrong").build()));
+
+        assertEquals(1, meterRegistry.get(LOGIN_TIMER).tag(OUTCOME_TAG, "success").timer().count());
+        assertEquals(1, meterRegistry.get(LOGIN_TIMER).tag(OUTCOME_TAG, "bad_credentials").timer().count());
+        // outcome is the only tag, a username label would create one series per user
+        meterRegistry.get(LOGIN_TIMER).timers().forEach(timer -> assertEquals(1, timer.getId().getTags().size()));
+    }
+
+    @Test
+    void saturatedPasswordCheckPoolIsServiceUnavailable() throws Exception {
+        PasswordEncoder saturated = mock(PasswordEncoder.class);
+        when(saturated.matches(any(), any())).thenThrow(new LoginCapacityExceededException(LOGIN_CAPACITY_EXCEEDED, 7));
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setUserDetailsService((UserDetailsService) ReflectionTestUtils.getField(appController, "userService"));
+        authenticationProvider.setPasswordEncoder(saturated);
+        ReflectionTestUtils.setField(appController, "authenticationManager", new ProviderManager(authenticationProvider));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(appController).build();
+
+        mockMvc.perform(post("/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + USERNAME + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(RETRY_AFTER, "7"))
+                .andExpect(jsonPath("$.message").value(LOGIN_CAPACITY_EXCEEDED));
+        assertEquals(1, meterRegistry.get(LOGIN_TIMER).tag(OUTCOME_TAG, "overloaded").timer().count());
+    }
+
+    @Test
+    void invalidCursorIsABadRequest() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(appController).build();
+
+        mockMvc.perform(get("/users").param("cursor", "bm90IGEgY3Vyc29y"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(startsWith(INVALID_CURSOR)));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void userPageLeavesOutPasswordHashes() throws Exception {
+        ReflectionTestUtils.setField(ReflectionTestUtils.getField(appController, "userService"), "defaultPageSize", 20);
+        when(userRepository.findPageOrderById(eq(0L), any())).thenReturn(List.of(user));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(appController).build();
+
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].username").value(USERNAME))
+                .andExpect(jsonPath("$.users[0].password").doesNotExist());
+    }
+
+    @Test
+    void exportIsGzippedOnlyWhenTheClientAcceptsIt() throws Exception {
+        UserExportService userExportService = mock(UserExportService.class);
+        ReflectionTestUtils.setField(appController, "userExportService", userExportService);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(appController).build();
+
+        mockMvc.perform(get("/users/export").header(ACCEPT_ENCODING, "deflate, gzip;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(VARY, ACCEPT_ENCODING));
+        mockMvc.perform(get("/users/export").header(ACCEPT_ENCODING, "gzip;q=0, *"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(CONTENT_ENCODING));
+        verify(userExportService, times(2)).exportUsers(any(), eq(ExportFormat.NDJSON));
+    }
+
+    @Test
+    void acceptEncodingQualitiesAreHonoured() {
+        assertTrue(AppController.acceptsGzip("gzip"));
+        assertTrue(AppController.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+        assertTrue(AppController.acceptsGzip("deflate, *;q=0.1"));
+        assertFalse(AppController.acceptsGzip(null));
+        assertFalse(AppController.acceptsGzip("identity"));
+        assertFalse(AppController.acceptsGzip("gzip;q=0"));
+        assertFalse(AppController.acceptsGzip("gzip; q=0.000, *"));
+        assertFalse(AppController.acceptsGzip("*;q=0"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.supportportal.controller;
+
+import com.supportportal.service.ImageVariantService;
+import com.supportportal.service.ProfileImageService;
+import com.supportportal.service.ShardedImageStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.supportportal.utility.constants.FileConstant.*;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.springframework.http.HttpHeaders.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ProfileImageControllerTest {
+
+    private static final String USERNAME = "alice";
+    private static final byte[] IMAGE = image();
+
+    @TempDir
+    Path tempDir;
+
+    private MockMvc mockMvc;
+    private Path stored;
+    private String imagePath;
+    private String eTag;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ShardedImageStorage imageStorage = new ShardedImageStorage(Files.createDirectories(tempDir.resolve("images")).toString());
+        ProfileImageService profileImageService = new ProfileImageService(imageStorage, 1024 * 1024);
+        String fileName = profileImageService.store(USERNAME, new MockMultipartFile("profileImage", IMAGE));
+        stored = profileImageService.userFolder(USERNAME).resolve(fileName);
+        imagePath = USER_IMAGE_PATH + USERNAME + "/" + fileName;
+        eTag = "\"" + fileName.substring(0, fileName.indexOf(DOT)) + "\"";
+        mockMvc = MockMvcBuilders.standaloneSetup(new ProfileImageController(profileImageService, mock(ImageVariantService.class)))
+                .build();
+    }
+
+    @Test
+    void contentAddressedImagesAreImmutableWithTheDigestAsETag() throws Exception {
+        mockMvc.perform(get(imagePath))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ETAG, eTag))
+                .andExpect(header().string(CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL))
+                .andExpect(header().string(ACCEPT_RANGES, BYTES_RANGE_UNIT))
+                .andExpect(header().longValue(CONTENT_LENGTH, IMAGE.length))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(content().bytes(IMAGE));
+    }
+
+    @Test
+    void matchingETagIsNotModified() throws Exception {
+        mockMvc.perform(get(imagePath).header(IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void singleRangeIsPartialContent() throws Exception {
+        mockMvc.perform(get(imagePath).header(RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(CONTENT_RANGE, "bytes 2-5/" + IMAGE.length))
+                .andExpect(header().longValue(CONTENT_LENGTH, 4))
+                .andExpect(content().bytes(Arrays.copyOfRange(IMAGE, 2, 6)));
+
+        mockMvc.perform(get(imagePath).header(RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(IMAGE, IMAGE.length - 3, IMAGE.length)));
+    }
+
+    @Test
+    void severalOrMalformedRangesGetTheWholeImage() throws Exception {
+        mockMvc.perform(get(imagePath).header(RANGE, "bytes=0-1,4-5"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(IMAGE));
+        mockMvc.perform(get(imagePath).header(RANGE, "lines=1-2"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(IMAGE));
+    }
+
+    @Test
+    void rangePastTheEndIsNotSatisfiable() throws Exception {
+        mockMvc.perform(get(imagePath).header(RANGE, "bytes=" + IMAGE.length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(CONTENT_RANGE, "bytes */" + IMAGE.length));
+    }
+
+    @Test
+    void ifRangeOnlyMatchesTheCurrentStrongETag() throws Exception {
+        mockMvc.perform(get(imagePath).header(RANGE, "bytes=2-5").header(IF_RANGE, eTag))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(IMAGE, 2, 6)));
+        mockMvc.perform(get(imagePath).header(RANGE, "bytes=2-5").header(IF_RANGE, "\"0123\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(IMAGE));
+    }
+
+    @Test
+    void currentImageHasAWeakETagThatIfRangeNeverMatches() throws Exception {
+        MvcResult result = mockMvc.perform(get(USER_IMAGE_PATH + USERNAME))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ETAG, startsWith("W/\"")))
+                .andExpect(header().string(CACHE_CONTROL, REVALIDATE_CACHE_CONTROL))
+                .andExpect(content().bytes(IMAGE))
+                .andReturn();
+        String weakETag = result.getResponse().getHeader(ETAG);
+
+        mockMvc.perform(get(USER_IMAGE_PATH + USERNAME).header(IF_NONE_MATCH, weakETag))
+                .andExpect(status().isNotModified());
+        // size and mtime may survive a replacement, a range is only served against a strong validator
+        mockMvc.perform(get(USER_IMAGE_PATH + USERNAME).header(RANGE, "bytes=2-5").header(IF_RANGE, weakETag))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(IMAGE));
+        mockMvc.perform(get(USER_IMAGE_PATH + USERNAME).header(RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent());
+    }
+
+    @Test
+    void sendfileIsHandedToTheConnector() throws Exception {
+        mockMvc.perform(get(imagePath).header(RANGE, "bytes=2-5").requestAttr(SENDFILE_SUPPORT_ATTRIBUTE, true))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().longValue(CONTENT_LENGTH, 4))
+                .andExpect(request().attribute(SENDFILE_FILENAME_ATTRIBUTE, stored.toString()))
+                .andExpect(request().attribute(SENDFILE_START_ATTRIBUTE, 2L))
+                // exclusive
+                .andExpect(request().attribute(SENDFILE_END_ATTRIBUTE, 6L))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void missingImagesAndPathsOutsideTheFolderAreNotFound() throws Exception {
+        mockMvc.perform(get(USER_IMAGE_PATH + USERNAME + "/" + "0".repeat(64) + ".png"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get(USER_IMAGE_PATH + USERNAME + "/..%2F..%2Fsecret.png"))
+                .andExpect(status().isNotFound());
+        assertEquals(IMAGE.length, Files.size(stored));
+    }
+
+    private static byte[] image() {
+        byte[] image = Arrays.copyOf(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, 64);
+        for (int i = 8; i < image.length; i++) {
+            image[i] = (byte) i;
+        }
+        return image;
+    }
+}
@@ -0,0 +1,41 @@
+package com.supportportal.metrics;
+
+import com.supportportal.entity.User;
+import com.supportportal.security.BoundedPasswordEncoder;
+import com.supportportal.security.VerifiedTokenCache;
+import com.supportportal.service.EmailDispatcher;
+import com.supportportal.service.ImageVariantService;
+import com.supportportal.service.LoginAttemptService;
+import com.supportportal.service.UserLookupCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static com.supportportal.utility.constants.MetricConstant.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class ApplicationMetricsTest {
+
+    @Test
+    void cacheMetersSurviveGarbageCollectionAndReportEachCache() {
+        UserLookupCache userLookupCache = new UserLookupCache(true, 60, 60, 100);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new ApplicationMetrics(mock(BoundedPasswordEncoder.class), mock(LoginAttemptService.class), userLookupCache,
+                new VerifiedTokenCache(true, 100), mock(EmailDispatcher.class), mock(ImageVariantService.class))
+                .bindTo(registry);
+
+        User alice = User.builder().username("alice").email("alice@supportportal.com").build();
+        userLookupCache.getByUsername("alice", username -> alice);
+        userLookupCache.getByUsername("alice", username -> alice);
+        userLookupCache.getByEmail("nobody@supportportal.com", email -> null);
+        // the meters only reference their state weakly
+        System.gc();
+        System.gc();
+
+        assertEquals(1, registry.get(CACHE_HITS).tag(CACHE_TAG, "user-username").functionCounter().count());
+        assertEquals(1, registry.get(CACHE_MISSES).tag(CACHE_TAG, "user-username").functionCounter().count());
+        assertEquals(1, registry.get(CACHE_MISSES).tag(CACHE_TAG, "user-email").functionCounter().count());
+        assertEquals(1, registry.get(CACHE_SIZE).tag(CACHE_TAG, "user-username").gauge().value());
+        assertEquals(0, registry.get(CACHE_SIZE).tag(CACHE_TAG, "user-email").gauge().value());
+    }
+}
@@ -0,0 +1,65 @@
+package com.supportportal.metrics.jfr;
+
+import com.supportportal.security.BoundedPasswordEncoder;
+import com.supportportal.security.JwtTokenProvider;
+import com.supportportal.security.VerifiedTokenCache;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthenticationEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    // recorded with the shipped settings, the same file FlightRecording layers on top of default.jfc
+    @Test
+    void passwordAndTokenChecksAreRecorded() throws Exception {
+        BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(4);
+        BoundedPasswordEncoder passwordEncoder = new BoundedPasswordEncoder(bCryptPasswordEncoder, 1, 4, 500, 1);
+        String hash = bCryptPasswordEncoder.encode("Aq3mZx81Lp");
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider("test-secret", new VerifiedTokenCache(false, 1), false);
+
+        Path file = tempDir.resolve("auth.jfr");
+        try (Reader reader = new InputStreamReader(new ClassPathResource("jfr/supportportal.jfc").getInputStream(), StandardCharsets.UTF_8);
+             Recording recording = new Recording(Configuration.create(reader))) {
+            recording.start();
+            assertTrue(passwordEncoder.matches("Aq3mZx81Lp", hash));
+            assertThrows(RuntimeException.class, () -> jwtTokenProvider.verifyToken("not-a-token"));
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            passwordEncoder.destroy();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().startsWith("com.supportportal."))
+                .collect(Collectors.toList());
+        RecordedEvent passwordMatch = only(events, "com.supportportal.PasswordMatch");
+        assertEquals(4, passwordMatch.getInt("cost"));
+        assertTrue(passwordMatch.getBoolean("matched"));
+        RecordedEvent tokenVerify = only(events, "com.supportportal.TokenVerify");
+        assertEquals("invalid", tokenVerify.getString("outcome"));
+        assertFalse(tokenVerify.getBoolean("cached"));
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream().filter(event -> event.getEventType().getName().equals(name)).collect(Collectors.toList());
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+}
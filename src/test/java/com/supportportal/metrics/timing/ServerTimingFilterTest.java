@@ -0,0 +1,55 @@
+package com.supportportal.metrics.timing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+
+import static com.supportportal.utility.constants.MetricConstant.SERVER_TIMING_HEADER;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerTimingFilterTest {
+
+    @Test
+    void sampledRequestGetsPhasesBeforeTheBodyCommits() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (request, servletResponse) -> {
+            ServerTiming.record(TimingPhase.TOKEN, TimeUnit.MICROSECONDS.toNanos(41));
+            ServerTiming.record(TimingPhase.REPOSITORY, TimeUnit.MILLISECONDS.toNanos(2));
+            ServerTiming.record(TimingPhase.REPOSITORY, TimeUnit.MILLISECONDS.toNanos(1));
+            servletResponse.getOutputStream().write(new byte[]{'{', '}'});
+            // committed here, later phases can no longer reach the client
+            servletResponse.flushBuffer();
+            ServerTiming.record(TimingPhase.JSON, 1);
+        };
+
+        new ServerTimingFilter(1).doFilter(new MockHttpServletRequest("GET", "/user/list"), response, chain);
+
+        String header = response.getHeader(SERVER_TIMING_HEADER);
+        assertTrue(header.startsWith("token;dur=0.041, db;dur=3.000;desc=\"2\", total;dur="), header);
+        assertFalse(header.contains("json"), header);
+        assertFalse(ServerTiming.isSampled());
+    }
+
+    @Test
+    void headerIsAddedWhenNothingCommittedTheResponse() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new ServerTimingFilter(1).doFilter(new MockHttpServletRequest("GET", "/user/home"), response,
+                (request, servletResponse) -> ServerTiming.record(TimingPhase.CONTROLLER, 1));
+
+        assertTrue(response.getHeader(SERVER_TIMING_HEADER).startsWith("app;dur=0.000, total;dur="));
+    }
+
+    @Test
+    void unsampledRequestIsLeftAlone() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new ServerTimingFilter(0).doFilter(new MockHttpServletRequest("GET", "/user/home"), response,
+                (request, servletResponse) -> assertFalse(ServerTiming.isSampled()));
+
+        assertNull(response.getHeader(SERVER_TIMING_HEADER));
+    }
+}
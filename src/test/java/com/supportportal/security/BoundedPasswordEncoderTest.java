@@ -0,0 +1,95 @@
+package com.supportportal.security;
+
+import com.supportportal.exception.domain.LoginCapacityExceededException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private static final String PASSWORD = "Aq3mZx81Lp";
+    private static final String HASH = new BCryptPasswordEncoder(4).encode(PASSWORD);
+    private static final long RETRY_AFTER_SECONDS = 7;
+
+    private final CountDownLatch hashing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    // holds the single hashing thread until released
+    private final BCryptPasswordEncoder blockingDelegate = new BCryptPasswordEncoder(4) {
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            hashing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.matches(rawPassword, encodedPassword);
+        }
+    };
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        passwordEncoder.destroy();
+    }
+
+    @Test
+    void checkIsRejectedWhenTheQueueIsFull() throws Exception {
+        passwordEncoder = new BoundedPasswordEncoder(blockingDelegate, 1, 1, 60_000, RETRY_AFTER_SECONDS);
+        CompletableFuture<Boolean> running = saturate();
+
+        LoginCapacityExceededException rejected = assertThrows(LoginCapacityExceededException.class,
+                () -> passwordEncoder.matches(PASSWORD, HASH));
+
+        assertEquals(RETRY_AFTER_SECONDS, rejected.getRetryAfterSeconds());
+        assertEquals(1, passwordEncoder.getRejectedCount());
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        // the queued check still gets its turn
+        awaitQueueDepth(0);
+    }
+
+    @Test
+    void checkThatWaitedTooLongIsDroppedBeforeHashing() throws Exception {
+        passwordEncoder = new BoundedPasswordEncoder(blockingDelegate, 1, 1, 50, RETRY_AFTER_SECONDS);
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> passwordEncoder.matches(PASSWORD, HASH));
+        assertTrue(hashing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> passwordEncoder.matches(PASSWORD, HASH));
+        awaitQueueDepth(1);
+
+        Thread.sleep(100);
+        release.countDown();
+
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        ExecutionException dropped = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertTrue(dropped.getCause() instanceof LoginCapacityExceededException);
+        assertEquals(1, passwordEncoder.getRejectedCount());
+        // the dropped check never reached BCrypt
+        assertEquals(1, passwordEncoder.getMatchCount());
+    }
+
+    // one check hashing, one waiting in the only queue slot
+    private CompletableFuture<Boolean> saturate() throws InterruptedException {
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> passwordEncoder.matches(PASSWORD, HASH));
+        assertTrue(hashing.await(5, TimeUnit.SECONDS));
+        CompletableFuture.supplyAsync(() -> passwordEncoder.matches(PASSWORD, HASH));
+        awaitQueueDepth(1);
+        return running;
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (passwordEncoder.getQueueDepth() != depth) {
+            assertTrue(System.nanoTime() < deadline, "queue never reached " + depth);
+            Thread.sleep(1);
+        }
+    }
+}
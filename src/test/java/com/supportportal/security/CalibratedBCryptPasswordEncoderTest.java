@@ -0,0 +1,46 @@
+package com.supportportal.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+    private static final String PASSWORD = "Aq3mZx81Lp";
+
+    @Test
+    void onlyLowerCostsAreUpgraded() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(6);
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode(PASSWORD)));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode(PASSWORD)));
+        // written by an instance calibrated on faster hardware, left alone instead of ping-ponging
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(8).encode(PASSWORD)));
+        assertFalse(encoder.upgradeEncoding("{noop}" + PASSWORD));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    @Test
+    void rehashRunsOnThePasswordCheckPool() {
+        AtomicReference<String> encodingThread = new AtomicReference<>();
+        BoundedPasswordEncoder passwordEncoder = new BoundedPasswordEncoder(new CalibratedBCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                encodingThread.set(Thread.currentThread().getName());
+                return super.encode(rawPassword);
+            }
+        }, 1, 4, 500, 1);
+        try {
+            String hash = passwordEncoder.encode(PASSWORD);
+
+            assertEquals("password-check-1", encodingThread.get());
+            assertEquals(4, CalibratedBCryptPasswordEncoder.costOf(hash));
+            assertTrue(passwordEncoder.matches(PASSWORD, hash));
+        } finally {
+            passwordEncoder.destroy();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.supportportal.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailBodyCipherTest {
+
+    private static final String BODY = "Hello Alice, \n \n Your new account password is: Aq3mZx81Lp\n \n The Support Team";
+
+    private final EmailBodyCipher emailBodyCipher = new EmailBodyCipher("test-secret");
+
+    @Test
+    void storedBodyNeverContainsThePassword() {
+        String stored = emailBodyCipher.encrypt(BODY);
+
+        assertFalse(stored.contains("Aq3mZx81Lp"));
+        assertEquals(BODY, emailBodyCipher.decrypt(stored));
+        // a fresh IV per body, equal emails do not look equal in the table
+        assertNotEquals(stored, emailBodyCipher.encrypt(BODY));
+    }
+
+    @Test
+    void tamperedOrForeignBodiesAreRejected() {
+        String stored = emailBodyCipher.encrypt(BODY);
+        // a character well inside the ciphertext, past prefix and IV
+        int position = stored.length() / 2;
+        String tampered = stored.substring(0, position) + (stored.charAt(position) == 'A' ? 'B' : 'A') + stored.substring(position + 1);
+
+        assertThrows(IllegalStateException.class, () -> emailBodyCipher.decrypt(tampered));
+        assertThrows(IllegalStateException.class, () -> new EmailBodyCipher("another-secret").decrypt(stored));
+    }
+
+    @Test
+    void bodiesQueuedBeforeEncryptionPassThrough() {
+        assertEquals(BODY, emailBodyCipher.decrypt(BODY));
+        assertNull(emailBodyCipher.decrypt(null));
+        assertNull(emailBodyCipher.encrypt(null));
+    }
+}
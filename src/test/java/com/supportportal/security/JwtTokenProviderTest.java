@@ -0,0 +1,163 @@
+package com.supportportal.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.supportportal.entity.User;
+import com.supportportal.entity.UserPrinciple;
+import com.supportportal.security.enumeration.Permission;
+import com.supportportal.security.enumeration.Role;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.supportportal.security.enumeration.Role.*;
+import static com.supportportal.utility.constants.SecurityConstant.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "test-secret";
+
+    @Test
+    void compactTokensCarryThePermissionMaskOnly() {
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(SECRET, new VerifiedTokenCache(false, 1), true);
+
+        String token = jwtTokenProvider.generateJwtToken(principle(ROLE_ADMIN));
+
+        DecodedJWT decodedJWT = JWT.decode(token);
+        assertEquals(ROLE_ADMIN.getAuthoritySet().getMask(), decodedJWT.getClaim(PERMISSIONS).asLong());
+        assertTrue(decodedJWT.getClaim(AUTHORITIES).isNull());
+        VerifiedToken verifiedToken = jwtTokenProvider.verifyToken(token);
+        assertEquals("alice", verifiedToken.getSubject());
+        assertEquals(ROLE_ADMIN.getAuthorities(), names(verifiedToken.getAuthorities()));
+        // the interned list itself, nothing is allocated per token
+        assertSame(ROLE_ADMIN.getAuthoritySet().getGrantedAuthorities(), verifiedToken.getAuthorities());
+    }
+
+    @Test
+    void everyRoleRoundTripsInBothForms() {
+        JwtTokenProvider compact = new JwtTokenProvider(SECRET, new VerifiedTokenCache(false, 1), true);
+        JwtTokenProvider legacy = new JwtTokenProvider(SECRET, new VerifiedTokenCache(false, 1), false);
+        for (Role role : Role.values()) {
+            String compactToken = compact.generateJwtToken(principle(role));
+            String legacyToken = legacy.generateJwtToken(principle(role));
+
+            assertEquals(role.getAuthorities(), names(legacy.verifyToken(compactToken).getAuthorities()), role.name());
+            assertEquals(role.getAuthorities(), names(compact.verifyToken(legacyToken).getAuthorities()), role.name());
+        }
+    }
+
+    @Test
+    void legacyArrayClaimsAreStillAccepted() {
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(SECRET, new VerifiedTokenCache(false, 1), true);
+        // issued before the perms claim existed, in no particular order
+        String token = legacyToken("user:update", "user:read");
+
+        List<GrantedAuthority> authorities = jwtTokenProvider.verifyToken(token).getAuthorities();
+
+        assertEquals(List.of("user:read", "user:update"), names(authorities));
+        assertSame(Permission.USER_READ.getGrantedAuthority(), authorities.get(0));
+    }
+
+    @Test
+    void unregisteredAuthorityStringsAreKeptAsTheyAre() {
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(SECRET, new VerifiedTokenCache(false, 1), false);
+
+        List<GrantedAuthority> authorities = jwtTokenProvider.verifyToken(legacyToken("user:read", "report:export")).getAuthorities();
+
+        assertEquals(List.of("user:read", "report:export"), names(authorities));
+    }
+
+    @Test
+    void unknownPermissionBitsAreRejected() {
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(SECRET, new VerifiedTokenCache(false, 1), true);
+        String token = JWT.create()
+                .withIssuer(GET_LISTS_LLC)
+                .withSubject("alice")
+                .withClaim(PERMISSIONS, 1L << Permission.values().length)
+                .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+                .sign(Algorithm.HMAC512(SECRET.getBytes()));
+
+        assertThrows(JWTVerificationException.class, () -> jwtTokenProvider.verifyToken(token));
+    }
+
+    @Test
+    void repeatedTokenIsServedFromTheCache() {
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(true, 10);
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(SECRET, verifiedTokenCache, true);
+        String token = jwtTokenProvider.generateJwtToken(principle(ROLE_HR));
+
+        VerifiedToken first = jwtTokenProvider.verifyToken(token);
+        VerifiedToken second = jwtTokenProvider.verifyToken(token);
+
+        // no second verification, the very same result comes back
+        assertSame(first, second);
+        assertEquals(1, verifiedTokenCache.missCount());
+        assertEquals(1, verifiedTokenCache.hitCount());
+        assertEquals(1, verifiedTokenCache.size());
+    }
+
+    @Test
+    void expiredTokenIsRejectedEvenWhenCached() throws InterruptedException {
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(true, 10);
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(SECRET, verifiedTokenCache, false);
+        // exp has second precision, this is one to two seconds away
+        Date expiresAt = new Date((System.currentTimeMillis() / 1000 + 2) * 1000);
+        String token = JWT.create()
+                .withIssuer(GET_LISTS_LLC)
+                .withSubject("alice")
+                .withArrayClaim(AUTHORITIES, new String[]{"user:read"})
+                .withExpiresAt(expiresAt)
+                .sign(Algorithm.HMAC512(SECRET.getBytes()));
+        jwtTokenProvider.verifyToken(token);
+        assertEquals(1, verifiedTokenCache.size());
+
+        Thread.sleep(expiresAt.getTime() - System.currentTimeMillis() + 1_100);
+
+        assertThrows(TokenExpiredException.class, () -> jwtTokenProvider.verifyToken(token));
+        assertEquals(0, verifiedTokenCache.size());
+    }
+
+    @Test
+    void cacheEvictsBeyondItsMaximumSize() {
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(true, 1);
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(SECRET, verifiedTokenCache, true);
+
+        jwtTokenProvider.verifyToken(jwtTokenProvider.generateJwtToken(principle(ROLE_USER)));
+        jwtTokenProvider.verifyToken(jwtTokenProvider.generateJwtToken(principle(ROLE_ADMIN)));
+
+        assertEquals(1, verifiedTokenCache.size());
+        assertEquals(1, verifiedTokenCache.evictionCount());
+    }
+
+    @Test
+    void roleAuthoritiesAreListedInPermissionOrder() {
+        // bit order, which is the order the Authority arrays already declare them in
+        assertEquals(List.of("user:read", "user:update", "user:create", "user:delete"), ROLE_SUPER_ADMIN.getAuthorities());
+        assertEquals(List.of("user:read", "user:update"), ROLE_HR.getAuthorities());
+        assertEquals(List.of("user:read"), ROLE_USER.getAuthorities());
+    }
+
+    private static String legacyToken(String... authorities) {
+        return JWT.create()
+                .withIssuer(GET_LISTS_LLC)
+                .withSubject("alice")
+                .withArrayClaim(AUTHORITIES, authorities)
+                .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+                .sign(Algorithm.HMAC512(SECRET.getBytes()));
+    }
+
+    private static List<String> names(List<GrantedAuthority> authorities) {
+        return authorities.stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
+    }
+
+    private static UserPrinciple principle(Role role) {
+        return new UserPrinciple(User.builder().username("alice").role(role.name()).isActive(true).isNotLocked(true).build());
+    }
+}
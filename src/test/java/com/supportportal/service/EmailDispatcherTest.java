@@ -0,0 +1,250 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.EmailOutbox;
+import com.supportportal.repository.EmailOutboxRepository;
+import com.supportportal.security.EmailBodyCipher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.supportportal.entity.enumeration.EmailStatus.FAILED;
+import static com.supportportal.entity.enumeration.EmailStatus.PENDING;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EmailDispatcherTest {
+
+    private static final String REJECTED_RECIPIENT = "nobody@supportportal.com";
+    private static final EmailBodyCipher CIPHER = new EmailBodyCipher("test-secret");
+
+    private FakeSmtpServer smtpServer;
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtpServer = new FakeSmtpServer();
+        emailOutboxRepository = mock(EmailOutboxRepository.class);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        smtpServer.close();
+    }
+
+    @Test
+    void batchesShareOneConnectionAndSentEmailsAreDeleted() {
+        EmailDispatcher dispatcher = dispatcher(smtpServer.getPort(), 3);
+        List<EmailOutbox> first = List.of(email(1), email(2), email(3));
+        List<EmailOutbox> second = List.of(email(4));
+        when(emailOutboxRepository.claimDue(eq(PENDING), any(Date.class), any(Pageable.class)))
+                .thenReturn(first, second, List.of());
+
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+
+        assertEquals(4, smtpServer.messages.size());
+        assertEquals(1, smtpServer.connections.get());
+        assertEquals(1, dispatcher.getConnectionCount());
+        assertEquals(4, dispatcher.getSentCount());
+        verify(emailOutboxRepository, times(4)).delete(any(EmailOutbox.class));
+        // decrypted into the message only
+        assertTrue(smtpServer.messages.get(3).contains("Your new account password is: 4"));
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void rejectedEmailIsRetriedLaterThenAbandoned() {
+        EmailDispatcher dispatcher = dispatcher(smtpServer.getPort(), 2);
+        EmailOutbox rejected = email(1);
+        rejected.setRecipient(REJECTED_RECIPIENT);
+        when(emailOutboxRepository.claimDue(eq(PENDING), any(Date.class), any(Pageable.class)))
+                .thenReturn(List.of(rejected), List.of(rejected));
+
+        long before = System.currentTimeMillis();
+        dispatcher.dispatch();
+
+        assertEquals(PENDING, rejected.getStatus());
+        assertEquals(1, rejected.getAttempts());
+        assertTrue(rejected.getNextAttemptAt().getTime() > before);
+        verify(emailOutboxRepository, never()).delete(any(EmailOutbox.class));
+
+        dispatcher.dispatch();
+
+        assertEquals(FAILED, rejected.getStatus());
+        assertNull(rejected.getBody());
+        assertEquals(1, dispatcher.getAbandonedCount());
+        assertEquals(2, dispatcher.getFailedAttemptCount());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void bodyThatCannotBeDecryptedIsAbandonedWithoutSending() {
+        EmailDispatcher dispatcher = dispatcher(smtpServer.getPort(), 8);
+        EmailOutbox foreign = email(1);
+        foreign.setBody(new EmailBodyCipher("another-secret").encrypt("Your new account password is: 1"));
+        EmailOutbox next = email(2);
+        when(emailOutboxRepository.claimDue(eq(PENDING), any(Date.class), any(Pageable.class)))
+                .thenReturn(List.of(foreign, next), List.of());
+
+        dispatcher.dispatch();
+
+        assertEquals(FAILED, foreign.getStatus());
+        assertNull(foreign.getBody());
+        assertEquals(1, dispatcher.getAbandonedCount());
+        assertEquals(1, smtpServer.messages.size());
+        verify(emailOutboxRepository).delete(next);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void unreachableServerLeavesTheBatchAndPauses() throws IOException {
+        int port = smtpServer.getPort();
+        smtpServer.close();
+        EmailDispatcher dispatcher = dispatcher(port, 2);
+        EmailOutbox email = email(1);
+        when(emailOutboxRepository.claimDue(eq(PENDING), any(Date.class), any(Pageable.class))).thenReturn(List.of(email));
+
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+
+        assertEquals(0, email.getAttempts());
+        // the second run is inside the backoff and does not even claim
+        verify(emailOutboxRepository, times(1)).claimDue(eq(PENDING), any(Date.class), any(Pageable.class));
+    }
+
+    @Test
+    void droppedConnectionLeavesTheRestOfTheBatchForTheNextRun() {
+        EmailDispatcher dispatcher = dispatcher(smtpServer.getPort(), 3);
+        EmailOutbox sent = email(1);
+        EmailOutbox interrupted = email(2);
+        EmailOutbox untried = email(3);
+        when(emailOutboxRepository.claimDue(eq(PENDING), any(Date.class), any(Pageable.class)))
+                .thenReturn(List.of(sent, interrupted, untried), List.of(interrupted, untried), List.of());
+        smtpServer.dropConnectionAtMessage = 2;
+
+        // nothing escapes, a failed run would roll back the delete of the email already sent
+        dispatcher.dispatch();
+
+        assertEquals(1, smtpServer.messages.size());
+        verify(emailOutboxRepository, times(1)).delete(sent);
+        assertEquals(1, interrupted.getAttempts());
+        assertEquals(0, untried.getAttempts());
+        assertNull(untried.getLastError());
+
+        dispatcher.dispatch();
+
+        assertEquals(3, smtpServer.messages.size());
+        assertEquals(2, smtpServer.connections.get());
+        verify(emailOutboxRepository).delete(interrupted);
+        verify(emailOutboxRepository).delete(untried);
+        dispatcher.shutdown();
+    }
+
+    private EmailDispatcher dispatcher(int port, int maxAttempts) {
+        return new EmailDispatcher(emailOutboxRepository, CIPHER, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+                "smtp", "localhost", port,
+                "", "", "support@supportportal.com", false, 2000, 10, 5, maxAttempts, 60000, 3600000, 60000);
+    }
+
+    private static EmailOutbox email(long id) {
+        return EmailOutbox.builder()
+                .id(id)
+                .recipient("user" + id + "@supportportal.com")
+                .subject("New Password")
+                .body(CIPHER.encrypt("Your new account password is: " + id))
+                .status(PENDING)
+                .createdAt(new Date())
+                .nextAttemptAt(new Date())
+                .build();
+    }
+
+    // just enough SMTP for JavaMail, counts connections and keeps every accepted message
+    private static class FakeSmtpServer implements Closeable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger dataCommands = new AtomicInteger();
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        // closes the socket instead of accepting the nth message, once
+        private volatile int dropConnectionAtMessage;
+
+        FakeSmtpServer() throws IOException {
+            Thread acceptor = new Thread(this::accept, "fake-smtp");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread session = new Thread(() -> converse(socket), "fake-smtp-session");
+                    session.setDaemon(true);
+                    session.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void converse(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+                reply(out, "220 fake ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase(Locale.ROOT);
+                    if (command.startsWith("RCPT") && command.contains(REJECTED_RECIPIENT.toUpperCase(Locale.ROOT))) {
+                        reply(out, "550 no such user");
+                    } else if (command.startsWith("DATA")) {
+                        reply(out, "354 end with .");
+                        StringBuilder message = new StringBuilder();
+                        while (!(line = in.readLine()).equals(".")) {
+                            message.append(line).append('\n');
+                        }
+                        if (dataCommands.incrementAndGet() == dropConnectionAtMessage) {
+                            return;
+                        }
+                        messages.add(message.toString());
+                        reply(out, "250 queued");
+                    } else if (command.startsWith("QUIT")) {
+                        reply(out, "221 bye");
+                        return;
+                    } else {
+                        reply(out, "250 ok");
+                    }
+                }
+            } catch (IOException e) {
+                // client went away
+            }
+        }
+
+        private static void reply(Writer out, String line) throws IOException {
+            out.write(line + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
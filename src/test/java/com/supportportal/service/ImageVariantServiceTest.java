@@ -0,0 +1,105 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.enumeration.ImageVariant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageVariantServiceTest {
+
+    private static final String HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @TempDir
+    Path tempDir;
+
+    private ImageVariantService imageVariantService;
+
+    @BeforeEach
+    void setUp() {
+        imageVariantService = new ImageVariantService(1, 1, 1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageVariantService.destroy();
+    }
+
+    @Test
+    void everyVariantIsScaledDownFromTheOriginal() throws IOException {
+        Path original = write(600, 300, BufferedImage.TYPE_INT_RGB, "jpeg", "jpg");
+
+        assertEquals(ImageVariant.values().length, imageVariantService.generate(original));
+
+        for (ImageVariant variant : ImageVariant.values()) {
+            BufferedImage scaled = ImageIO.read(original.resolveSibling(variant.fileName(HASH, "jpg")).toFile());
+            // the longer edge is bounded, the aspect ratio kept
+            assertEquals(variant.getSize(), scaled.getWidth());
+            assertEquals(variant.getSize() / 2, scaled.getHeight());
+        }
+        assertEquals(ImageVariant.values().length + 1, files().size());
+        assertEquals(original.resolveSibling(ImageVariant.SMALL.fileName(HASH, "jpg")), imageVariantService.bestFit(original, 100));
+        assertEquals(original, imageVariantService.bestFit(original, 1000));
+    }
+
+    @Test
+    void transparentImagesBecomePngAndAreNeverUpscaled() throws IOException {
+        Path original = write(200, 200, BufferedImage.TYPE_INT_ARGB, "png", "png");
+
+        // 40 and 128 only, the original already fits 256
+        assertEquals(2, imageVariantService.generate(original));
+
+        assertTrue(Files.exists(original.resolveSibling(ImageVariant.THUMBNAIL.fileName(HASH, "png"))));
+        assertTrue(ImageIO.read(original.resolveSibling(ImageVariant.SMALL.fileName(HASH, "png")).toFile()).getColorModel().hasAlpha());
+        assertFalse(Files.exists(original.resolveSibling(ImageVariant.MEDIUM.fileName(HASH, "png"))));
+        assertEquals(original, imageVariantService.bestFit(original, 256));
+    }
+
+    @Test
+    void imagesAboveThePixelCapAreNotDecoded() throws IOException {
+        Path original = write(2000, 600, BufferedImage.TYPE_INT_RGB, "png", "png");
+
+        IOException exception = assertThrows(IOException.class, () -> imageVariantService.generate(original));
+
+        assertTrue(exception.getMessage().contains("1200000 pixels"), exception.getMessage());
+        assertEquals(List.of(original.getFileName().toString()), files());
+    }
+
+    @Test
+    void unreadableFilesAreRefused() throws IOException {
+        Path original = tempDir.resolve(HASH + ".jpg");
+        Files.write(original, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0, 1, 2});
+
+        assertThrows(IOException.class, () -> imageVariantService.generate(original));
+        assertEquals(List.of(original.getFileName().toString()), files());
+    }
+
+    private Path write(int width, int height, int type, String format, String extension) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(255, 128, 0, 128), width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        Path original = tempDir.resolve(HASH + "." + extension);
+        assertTrue(ImageIO.write(image, format, original.toFile()));
+        return original;
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
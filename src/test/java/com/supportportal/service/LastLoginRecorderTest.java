@@ -0,0 +1,99 @@
+package com.supportportal.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LastLoginRecorderTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private LastLoginRecorder lastLoginRecorder;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        lastLoginRecorder.shutdown();
+    }
+
+    @Test
+    void latestLoginPerUserWins() {
+        lastLoginRecorder = new LastLoginRecorder(jdbcTemplate, 100, false, now::get);
+        lastLoginRecorder.recordLogin("alice");
+        now.addAndGet(1_000);
+        lastLoginRecorder.recordLogin("alice");
+        lastLoginRecorder.recordLogin("bob");
+        assertEquals(2, lastLoginRecorder.pendingCount());
+
+        lastLoginRecorder.flush();
+
+        Map<String, Long> written = writtenLogins(1).get(0);
+        assertEquals(Map.of("alice", 1_001_000L, "bob", 1_001_000L), written);
+        assertEquals(0, lastLoginRecorder.pendingCount());
+    }
+
+    @Test
+    void reachingTheBatchSizeFlushesWithoutWaitingForTheSchedule() {
+        lastLoginRecorder = new LastLoginRecorder(jdbcTemplate, 2, false, now::get);
+        lastLoginRecorder.recordLogin("alice");
+        verifyNoInteractions(jdbcTemplate);
+
+        lastLoginRecorder.recordLogin("bob");
+
+        verify(jdbcTemplate, timeout(5_000)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void failedBatchIsRequeuedWithoutOverwritingANewerLogin() {
+        lastLoginRecorder = new LastLoginRecorder(jdbcTemplate, 100, false, now::get);
+        lastLoginRecorder.recordLogin("alice");
+        lastLoginRecorder.recordLogin("bob");
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            // alice logs in again while the failing batch is on its way
+            now.addAndGet(1_000);
+            lastLoginRecorder.recordLogin("alice");
+            throw new QueryTimeoutException("timeout");
+        }).thenReturn(new int[0]);
+
+        lastLoginRecorder.flush();
+        assertEquals(2, lastLoginRecorder.pendingCount());
+        lastLoginRecorder.flush();
+
+        assertEquals(Map.of("alice", 1_001_000L, "bob", 1_000_000L), writtenLogins(2).get(1));
+    }
+
+    @Test
+    void pendingLoginsAreFlushedOnShutdown() throws InterruptedException {
+        lastLoginRecorder = new LastLoginRecorder(jdbcTemplate, 100, false, now::get);
+        lastLoginRecorder.recordLogin("alice");
+
+        lastLoginRecorder.shutdown();
+
+        assertEquals(Map.of("alice", 1_000_000L), writtenLogins(1).get(0));
+    }
+
+    // username to login time of every batch written, in order
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Long>> writtenLogins(int batches) {
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(batches)).batchUpdate(anyString(), captor.capture());
+        return captor.getAllValues().stream().map(batch -> {
+            Map<String, Long> logins = new HashMap<>();
+            for (Object[] row : batch) {
+                logins.put((String) row[1], ((Timestamp) row[0]).getTime());
+            }
+            return logins;
+        }).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,134 @@
+package com.supportportal.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.supportportal.service.LoginAttemptService.ATTEMPT_WINDOW_MILLIS;
+import static com.supportportal.service.LoginAttemptService.MAXIMUM_ATTEMPT_NUMBER;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginAttemptServiceTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void failuresOlderThanTheWindowNoLongerCount() {
+        LoginAttemptService loginAttemptService = new LoginAttemptService(100, now::get);
+        for (int i = 0; i < MAXIMUM_ATTEMPT_NUMBER - 1; i++) {
+            loginAttemptService.addUserToCache("jdoe");
+        }
+        assertFalse(loginAttemptService.hasExceededMaxAttempt("jdoe"));
+
+        now.addAndGet(ATTEMPT_WINDOW_MILLIS - 1);
+        loginAttemptService.addUserToCache("jdoe");
+        assertTrue(loginAttemptService.hasExceededMaxAttempt("jdoe"));
+
+        // the first four slide out, only the last failure is left
+        now.addAndGet(2);
+        assertFalse(loginAttemptService.hasExceededMaxAttempt("jdoe"));
+        for (int i = 0; i < MAXIMUM_ATTEMPT_NUMBER - 2; i++) {
+            loginAttemptService.addUserToCache("jdoe");
+        }
+        assertFalse(loginAttemptService.hasExceededMaxAttempt("jdoe"));
+        loginAttemptService.addUserToCache("jdoe");
+        assertTrue(loginAttemptService.hasExceededMaxAttempt("jdoe"));
+    }
+
+    @Test
+    void entriesExpireWithTheirLastFailure() {
+        LoginAttemptService loginAttemptService = new LoginAttemptService(100, now::get);
+        loginAttemptService.addUserToCache("jdoe");
+        assertEquals(1, loginAttemptService.size());
+
+        now.addAndGet(ATTEMPT_WINDOW_MILLIS + 1);
+        loginAttemptService.purgeExpiredAttempts();
+
+        assertEquals(0, loginAttemptService.size());
+    }
+
+    @Test
+    void usernamesAreCappedAtTheMaximumSize() {
+        LoginAttemptService loginAttemptService = new LoginAttemptService(100, now::get);
+        for (int i = 0; i < 10_000; i++) {
+            loginAttemptService.addUserToCache("random" + i);
+        }
+
+        assertTrue(loginAttemptService.size() <= 100);
+        assertTrue(loginAttemptService.estimatedMemoryBytes() <= 100 * LoginAttemptService.ESTIMATED_ENTRY_BYTES);
+    }
+
+    @Test
+    void sprayOfFreshUsernamesCannotEvictAWindowCloseToLocking() {
+        int maximumSize = 100;
+        LoginAttemptService loginAttemptService = new LoginAttemptService(maximumSize, now::get);
+        for (int i = 0; i < MAXIMUM_ATTEMPT_NUMBER - 1; i++) {
+            loginAttemptService.addUserToCache("jdoe");
+        }
+        for (int i = 0; i <= maximumSize; i++) {
+            loginAttemptService.addUserToCache("random" + i);
+        }
+
+        loginAttemptService.addUserToCache("jdoe");
+        assertTrue(loginAttemptService.hasExceededMaxAttempt("jdoe"));
+        assertTrue(loginAttemptService.size() <= maximumSize);
+    }
+
+    @Test
+    void lockingWindowsOnlyLeaveByExpiring() {
+        LoginAttemptService loginAttemptService = new LoginAttemptService(10, now::get);
+        for (int i = 0; i < MAXIMUM_ATTEMPT_NUMBER; i++) {
+            loginAttemptService.addUserToCache("jdoe");
+        }
+        // every other window is one failure short of locking, they go first
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < MAXIMUM_ATTEMPT_NUMBER - 1; j++) {
+                loginAttemptService.addUserToCache("random" + i);
+            }
+        }
+        assertTrue(loginAttemptService.hasExceededMaxAttempt("jdoe"));
+
+        now.addAndGet(ATTEMPT_WINDOW_MILLIS + 1);
+        loginAttemptService.purgeExpiredAttempts();
+        assertEquals(0, loginAttemptService.size());
+    }
+
+    @Test
+    void concurrentFailuresAreAllCounted() throws InterruptedException {
+        LoginAttemptService loginAttemptService = new LoginAttemptService(100, now::get);
+        ExecutorService executor = Executors.newFixedThreadPool(MAXIMUM_ATTEMPT_NUMBER);
+        try {
+            for (int round = 0; round < 200; round++) {
+                String username = "user" + round;
+                CountDownLatch start = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(MAXIMUM_ATTEMPT_NUMBER);
+                for (int i = 0; i < MAXIMUM_ATTEMPT_NUMBER; i++) {
+                    executor.execute(() -> {
+                        awaitQuietly(start);
+                        loginAttemptService.addUserToCache(username);
+                        done.countDown();
+                    });
+                }
+                start.countDown();
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+                // a lost update would leave the window one short of the limit
+                assertTrue(loginAttemptService.hasExceededMaxAttempt(username), username);
+                loginAttemptService.evictUserFromCache(username);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.enumeration.ImageVariant;
+import com.supportportal.exception.domain.ImageTooLargeException;
+import com.supportportal.exception.domain.NotAnImageFileException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.supportportal.utility.constants.FileConstant.CONTENT_ADDRESSED_FILE_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileImageServiceTest {
+
+    private static final String USERNAME = "alice";
+    private static final int MAX_IMAGE_BYTES = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private ProfileImageService profileImageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ShardedImageStorage imageStorage = new ShardedImageStorage(Files.createDirectories(tempDir.resolve("images")),
+                Files.createDirectories(tempDir.resolve("user")));
+        profileImageService = new ProfileImageService(imageStorage, MAX_IMAGE_BYTES);
+    }
+
+    @Test
+    void formatIsTakenFromTheMagicBytes() throws Exception {
+        // a PNG uploaded as photo.jpg with a JPEG content type is stored as png
+        byte[] png = image(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, 100);
+
+        String fileName = profileImageService.store(USERNAME, new MockMultipartFile("profileImage", "photo.jpg", "image/jpeg", png));
+
+        assertTrue(fileName.matches(CONTENT_ADDRESSED_FILE_NAME), fileName);
+        assertTrue(fileName.endsWith(".png"));
+        assertArrayEquals(png, Files.readAllBytes(profileImageService.userFolder(USERNAME).resolve(fileName)));
+        assertEquals(List.of(fileName), files());
+    }
+
+    @Test
+    void otherContentIsRejectedWithoutLeavingFiles() {
+        byte[] script = "#!/bin/sh\necho not an image\n".getBytes();
+
+        assertThrows(NotAnImageFileException.class,
+                () -> profileImageService.store(USERNAME, new MockMultipartFile("profileImage", "photo.jpg", "image/jpeg", script)));
+        assertEquals(List.of(), files());
+    }
+
+    @Test
+    void imagesOverTheCapAreRejectedWithoutLeavingFiles() {
+        byte[] jpeg = image(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, MAX_IMAGE_BYTES + 1);
+
+        assertThrows(ImageTooLargeException.class,
+                () -> profileImageService.store(USERNAME, new MockMultipartFile("profileImage", "photo.jpg", "image/jpeg", jpeg)));
+        assertEquals(List.of(), files());
+    }
+
+    @Test
+    void imagesAtTheCapAreAccepted() throws Exception {
+        byte[] jpeg = image(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, MAX_IMAGE_BYTES);
+
+        assertTrue(profileImageService.store(USERNAME, new MockMultipartFile("profileImage", jpeg)).endsWith(".jpg"));
+    }
+
+    @Test
+    void sameImageReusesTheStoredFile() throws Exception {
+        byte[] gif = image(new byte[]{'G', 'I', 'F', '8'}, 200);
+        String first = profileImageService.store(USERNAME, new MockMultipartFile("profileImage", gif));
+        Path stored = profileImageService.userFolder(USERNAME).resolve(first);
+        FileTime marker = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(stored, marker);
+
+        String second = profileImageService.store(USERNAME, new MockMultipartFile("profileImage", gif));
+
+        assertEquals(first, second);
+        // not rewritten, the temp copy of the second upload was dropped instead of moved over it
+        assertEquals(marker, Files.getLastModifiedTime(stored));
+        assertEquals(List.of(first), files());
+    }
+
+    @Test
+    void newImageReplacesTheOldOneAndItsVariants() throws Exception {
+        String old = profileImageService.store(USERNAME, new MockMultipartFile("profileImage", image(new byte[]{'G', 'I', 'F', '8'}, 200)));
+        Path userFolder = profileImageService.userFolder(USERNAME);
+        String oldVariant = ImageVariant.THUMBNAIL.fileName(old.substring(0, old.indexOf('.')), "jpg");
+        Files.write(userFolder.resolve(oldVariant), new byte[]{1});
+
+        String current = profileImageService.store(USERNAME, new MockMultipartFile("profileImage", image(new byte[]{'G', 'I', 'F', '8'}, 300)));
+
+        assertNotEquals(old, current);
+        assertEquals(List.of(current), files());
+        assertEquals(userFolder.resolve(current), profileImageService.currentImage(USERNAME));
+    }
+
+    private List<String> files() {
+        Path userFolder = profileImageService.userFolder(USERNAME);
+        if (userFolder == null || !Files.isDirectory(userFolder)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(userFolder)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] image(byte[] magic, int length) {
+        byte[] image = Arrays.copyOf(magic, length);
+        for (int i = magic.length; i < length; i++) {
+            image[i] = (byte) i;
+        }
+        return image;
+    }
+}
@@ -0,0 +1,65 @@
+package com.supportportal.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedImageStorageTest {
+
+    private static final String USERNAME = "alice";
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+    private Path legacyRoot;
+    private ShardedImageStorage imageStorage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createDirectories(tempDir.resolve("images"));
+        legacyRoot = Files.createDirectories(tempDir.resolve("user"));
+        imageStorage = new ShardedImageStorage(root, legacyRoot);
+    }
+
+    @Test
+    void legacyFolderIsReadUntilMigrated() throws IOException {
+        Path legacy = Files.createDirectories(legacyRoot.resolve(USERNAME));
+        Files.write(legacy.resolve("image.jpg"), new byte[]{1});
+
+        assertEquals(legacy, imageStorage.userFolder(USERNAME));
+        assertEquals(1, imageStorage.legacyUsernames().size());
+
+        assertTrue(imageStorage.migrate(USERNAME));
+        Path sharded = imageStorage.userFolder(USERNAME);
+        assertEquals(USERNAME, sharded.getFileName().toString());
+        // <root>/ab/cd/<username>
+        assertEquals(root, sharded.getParent().getParent().getParent());
+        assertTrue(Files.exists(sharded.resolve("image.jpg")));
+        assertFalse(Files.exists(legacy));
+        assertTrue(imageStorage.legacyUsernames().isEmpty());
+        assertFalse(imageStorage.migrate(USERNAME));
+    }
+
+    @Test
+    void writesMigrateTheUserFirst() throws IOException {
+        Files.createDirectories(legacyRoot.resolve(USERNAME));
+
+        Path folder = imageStorage.writableUserFolder(USERNAME);
+
+        assertTrue(folder.startsWith(root));
+        assertFalse(Files.exists(legacyRoot.resolve(USERNAME)));
+    }
+
+    @Test
+    void namesLeavingTheRootAreRejected() {
+        assertNull(imageStorage.userFolder("../user"));
+        assertThrows(IOException.class, () -> imageStorage.writableUserFolder("a/b"));
+    }
+}
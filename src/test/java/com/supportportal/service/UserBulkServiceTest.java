@@ -0,0 +1,162 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.User;
+import com.supportportal.entity.dto.BulkUpdateResult;
+import com.supportportal.entity.dto.BulkUserUpdate;
+import com.supportportal.exception.domain.InvalidBulkUpdateException;
+import com.supportportal.repository.UserRepository;
+import com.supportportal.security.AuthoritySet;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.access.AccessDeniedException;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.supportportal.entity.enumeration.BulkOperation.*;
+import static com.supportportal.security.enumeration.Role.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// chunk size 3, so 7 ids cost 3 UPDATEs
+@DataJpaTest(properties = {
+        "spring.jpa.database=H2",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "supportportal.users.bulk.chunk-size=3"
+})
+@Import({UserBulkService.class, LoginAttemptService.class, UserLookupCache.class})
+class UserBulkServiceTest {
+
+    private static final int USER_COUNT = 10;
+    private static final String ADMIN = "admin";
+    private static final AuthoritySet HR = ROLE_HR.getAuthoritySet();
+    private static final AuthoritySet SUPER_ADMIN = ROLE_SUPER_ADMIN.getAuthoritySet();
+
+    @Autowired
+    private UserBulkService userBulkService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> ids = new ArrayList<>();
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < USER_COUNT; i++) {
+            ids.add(persist("user" + i, ROLE_USER.name()));
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void lockByIdsRunsOneUpdatePerChunk() throws InvalidBulkUpdateException {
+        BulkUpdateResult result = userBulkService.update(new BulkUserUpdate(LOCK, ids.subList(0, 7), null, null, null), ADMIN, HR);
+
+        assertEquals(7, result.getAffected());
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertFalse(userRepository.findUserByUsername("user6").isNotLocked());
+        assertTrue(userRepository.findUserByUsername("user7").isNotLocked());
+    }
+
+    @Test
+    void roleChangeByCurrentRoleIsOneStatement() throws InvalidBulkUpdateException {
+        BulkUpdateResult result = userBulkService.update(new BulkUserUpdate(CHANGE_ROLE, null, null, "role_user", ROLE_HR.name()),
+                ADMIN, SUPER_ADMIN);
+
+        assertEquals(USER_COUNT, result.getAffected());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(ROLE_HR.getAuthorities(), userRepository.findUserByUsername("user0").getAuthorities());
+    }
+
+    @Test
+    void selectionMustBeExactlyOneOfIdsUsernamesOrRole() {
+        assertThrows(InvalidBulkUpdateException.class,
+                () -> userBulkService.update(new BulkUserUpdate(LOCK, ids, List.of("user1"), null, null), ADMIN, HR));
+        assertThrows(InvalidBulkUpdateException.class,
+                () -> userBulkService.update(new BulkUserUpdate(LOCK, null, null, null, null), ADMIN, HR));
+        assertThrows(InvalidBulkUpdateException.class,
+                () -> userBulkService.update(new BulkUserUpdate(CHANGE_ROLE, ids, null, null, "ROLE_NOBODY"), ADMIN, SUPER_ADMIN));
+    }
+
+    @Test
+    void roleChangeNeedsUserDelete() {
+        // user:update is all HR and MANAGER have, it must not be enough to hand out roles
+        assertThrows(AccessDeniedException.class,
+                () -> userBulkService.update(new BulkUserUpdate(CHANGE_ROLE, ids, null, null, ROLE_SUPER_ADMIN.name()), ADMIN, HR));
+        assertThrows(AccessDeniedException.class,
+                () -> userBulkService.update(new BulkUserUpdate(CHANGE_ROLE, ids, null, null, ROLE_USER.name()), ADMIN,
+                        ROLE_ADMIN.getAuthoritySet()));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void rolesAboveTheCallerCannotBeGranted() {
+        // user:delete without user:create, ROLE_ADMIN carries a permission this caller lacks
+        AuthoritySet caller = AuthoritySet.fromAuthorities(List.of("user:read", "user:update", "user:delete"));
+
+        assertThrows(AccessDeniedException.class,
+                () -> userBulkService.update(new BulkUserUpdate(CHANGE_ROLE, ids, null, null, ROLE_ADMIN.name()), ADMIN, caller));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void usersAboveTheCallerAreLeftAlone() throws InvalidBulkUpdateException {
+        persist("admin", ROLE_SUPER_ADMIN.name());
+
+        BulkUpdateResult result = userBulkService.update(new BulkUserUpdate(DEACTIVATE, null, List.of("user1", "admin"), null, null),
+                "user0", HR);
+
+        assertEquals(1, result.getAffected());
+        assertFalse(userRepository.findUserByUsername("user1").isActive());
+        assertTrue(userRepository.findUserByUsername("admin").isActive());
+    }
+
+    @Test
+    void callerIsExcludedFromLockDeactivateAndRoleChange() throws InvalidBulkUpdateException {
+        assertEquals(USER_COUNT - 1, userBulkService.update(new BulkUserUpdate(LOCK, null, null, ROLE_USER.name(), null),
+                "user0", HR).getAffected());
+        assertEquals(USER_COUNT - 1, userBulkService.update(new BulkUserUpdate(DEACTIVATE, ids, null, null, null),
+                "user0", HR).getAffected());
+        assertEquals(USER_COUNT - 1, userBulkService.update(new BulkUserUpdate(CHANGE_ROLE, null, null, ROLE_USER.name(), ROLE_HR.name()),
+                "user0", SUPER_ADMIN).getAffected());
+        // unlocking and activating oneself is harmless
+        assertEquals(USER_COUNT, userBulkService.update(new BulkUserUpdate(UNLOCK, ids, null, null, null),
+                "user0", HR).getAffected());
+
+        User caller = userRepository.findUserByUsername("user0");
+        assertTrue(caller.isActive());
+        assertEquals(ROLE_USER.name(), caller.getRole());
+        assertFalse(userRepository.findUserByUsername("user1").isActive());
+    }
+
+    private Long persist(String username, String role) {
+        Long id = testEntityManager.persistAndGetId(User.builder()
+                .userId(username)
+                .username(username)
+                .email(username + "@supportportal.com")
+                .password("hash")
+                .joinDate(new Date())
+                .isActive(true)
+                .isNotLocked(true)
+                .role(role)
+                .build(), Long.class);
+        testEntityManager.flush();
+        testEntityManager.clear();
+        return id;
+    }
+}
@@ -0,0 +1,96 @@
+package com.supportportal.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supportportal.entity.User;
+import com.supportportal.entity.enumeration.ExportFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import static com.supportportal.security.enumeration.Role.ROLE_ADMIN;
+import static com.supportportal.security.enumeration.Role.ROLE_USER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.database=H2")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(UserExportService.class)
+class UserExportServiceTest {
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        persist("alice", "Smith, \"Jr\"", ROLE_ADMIN.name());
+        persist("bob", null, ROLE_USER.name());
+        persist("carol", "Line\nBreak", ROLE_USER.name());
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    @Test
+    void ndjsonHasOneObjectPerLine() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertEquals(3, userExportService.exportUsers(output, ExportFormat.NDJSON));
+
+        String ndjson = output.toString(UTF_8);
+        assertTrue(ndjson.endsWith("}\n"));
+        String[] lines = ndjson.split("\n");
+        assertEquals(3, lines.length);
+        String[] usernames = {"alice", "bob", "carol"};
+        for (int i = 0; i < lines.length; i++) {
+            // no separator before later rows, strict line based readers see the object first
+            assertTrue(lines[i].startsWith("{\"id\":"), lines[i]);
+            JsonNode row = objectMapper.readTree(lines[i]);
+            assertEquals(usernames[i], row.get("username").asText());
+        }
+        assertEquals("Smith, \"Jr\"", objectMapper.readTree(lines[0]).get("lastName").asText());
+        assertTrue(objectMapper.readTree(lines[1]).get("lastLoginDate").isNull());
+    }
+
+    @Test
+    void csvQuotesOnlyWhatNeedsIt() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertEquals(3, userExportService.exportUsers(output, ExportFormat.CSV));
+
+        String csv = output.toString(UTF_8);
+        assertTrue(csv.startsWith("id,userId,firstName,lastName,username,email,role,active,notLocked,joinDate,lastLoginDate\n"));
+        assertTrue(csv.contains(",alice,\"Smith, \"\"Jr\"\"\",alice,alice@supportportal.com,ROLE_ADMIN,true,true,"), csv);
+        assertTrue(csv.contains(",bob,,bob,bob@supportportal.com,ROLE_USER,true,true,"), csv);
+        assertTrue(csv.contains(",carol,\"Line\nBreak\",carol,"), csv);
+    }
+
+    private void persist(String username, String lastName, String role) {
+        testEntityManager.persist(User.builder()
+                .userId(username)
+                .firstName(username)
+                .lastName(lastName)
+                .username(username)
+                .email(username + "@supportportal.com")
+                .password("hash")
+                .joinDate(new Date())
+                .isActive(true)
+                .isNotLocked(true)
+                .role(role)
+                .build());
+    }
+}
@@ -0,0 +1,124 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.User;
+import com.supportportal.entity.enumeration.ExportFormat;
+import com.supportportal.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static com.supportportal.security.enumeration.Role.ROLE_ADMIN;
+import static com.supportportal.security.enumeration.Role.ROLE_USER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+// chunk size 2 so the rows span several chunks and set-based checks
+@DataJpaTest(properties = {
+        "spring.jpa.database=H2",
+        "supportportal.import.chunk-size=2",
+        "supportportal.import.hash-parallelism=2"
+})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(UserImportService.class)
+class UserImportServiceTest {
+
+    private static final String CSV = "username,email,firstName,lastName,role\n"
+            + "alice,alice@supportportal.com,Alice,\"Smith, Jr\",ROLE_ADMIN\n"
+            + "bob,bob@supportportal.com,Bob,,\n"
+            + "taken,new@supportportal.com,,,\n"
+            + "carol,not-an-email,,,\n"
+            + "alice,other@supportportal.com,,,\n"
+            + "dave,dave@supportportal.com,,,ROLE_UNKNOWN\n"
+            + "\n"
+            + "erin,erin@supportportal.com,Erin,,role_user\n";
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @MockBean
+    private BCryptPasswordEncoder passwordEncoder;
+
+    @MockBean
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(passwordEncoder.encode(anyString())).thenReturn("hash");
+        testEntityManager.persist(User.builder()
+                .userId("0")
+                .username("taken")
+                .email("taken@supportportal.com")
+                .password("hash")
+                .joinDate(new Date())
+                .role(ROLE_USER.name())
+                .build());
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void validRowsAreCreatedAndEveryOtherRowIsReported() throws IOException {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        long created = userImportService.importUsers(new ByteArrayInputStream(CSV.getBytes(UTF_8)), ExportFormat.CSV, report);
+
+        assertEquals(3, created);
+        User alice = userRepository.findUserByUsername("alice");
+        assertEquals("Smith, Jr", alice.getLastName());
+        assertEquals(ROLE_ADMIN.name(), alice.getRole());
+        assertEquals(ROLE_USER.name(), userRepository.findUserByUsername("bob").getRole());
+        assertEquals(ROLE_USER.name(), userRepository.findUserByUsername("erin").getRole());
+        assertNull(userRepository.findUserByUsername("dave"));
+        verify(emailService, times(3)).sendNewPasswordEmail(any(), anyString(), anyString());
+
+        String[] lines = report.toString(UTF_8).split("\n");
+        assertTrue(Arrays.stream(lines).allMatch(line -> line.startsWith("{")), report.toString(UTF_8));
+        assertEquals(4, Arrays.stream(lines).filter(line -> line.contains("\"error\"")).count());
+        assertTrue(lines[lines.length - 1].contains("\"done\":true"));
+        assertTrue(lines[lines.length - 1].contains("\"created\":3"));
+    }
+
+    @Test
+    void ndjsonExportLinesCanBeImported() throws IOException {
+        String ndjson = "{\"id\":7,\"username\":\"frank\",\"email\":\"frank@supportportal.com\",\"role\":\"ROLE_USER\",\"active\":true}\n"
+                + "{\"username\":\"taken\",\"email\":\"taken@supportportal.com\"}\n";
+
+        long created = userImportService.importUsers(new ByteArrayInputStream(ndjson.getBytes(UTF_8)), ExportFormat.NDJSON,
+                new ByteArrayOutputStream());
+
+        assertEquals(1, created);
+        assertNotNull(userRepository.findUserByUsername("frank"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserLookupCacheTest {
+
+    private static final int ROUNDS = 20_000;
+
+    @Test
+    void loadOvertakenByAnInvalidateIsNotCached() {
+        UserLookupCache userLookupCache = new UserLookupCache(true, 60, 60, 100);
+        User stale = user("old-hash");
+        User current = user("new-hash");
+
+        User loaded = userLookupCache.getByUsername("alice", username -> {
+            userLookupCache.invalidate("alice", null);
+            return stale;
+        });
+
+        assertSame(stale, loaded);
+        assertSame(current, userLookupCache.getByUsername("alice", username -> current));
+    }
+
+    // the invalidate lands while the loader returns, whichever wins the cache must end up current
+    @Test
+    void invalidateRacingTheEndOfALoadNeverLeavesAStaleUser() throws Exception {
+        UserLookupCache userLookupCache = new UserLookupCache(true, 60, 60, 100);
+        AtomicReference<User> stored = new AtomicReference<>(user("hash-0"));
+        Phaser loaderRead = new Phaser(2);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            for (int round = 1; round <= ROUNDS; round++) {
+                User written = user("hash-" + round);
+                Future<?> write = writer.submit(() -> {
+                    loaderRead.arriveAndAwaitAdvance();
+                    stored.set(written);
+                    userLookupCache.invalidate("alice", null);
+                });
+                userLookupCache.getByUsername("alice", username -> {
+                    User read = stored.get();
+                    loaderRead.arriveAndAwaitAdvance();
+                    return read;
+                });
+                write.get();
+
+                User cached = userLookupCache.getByUsername("alice", username -> stored.get());
+                assertSame(written, cached, "stale user cached in round " + round);
+                userLookupCache.invalidateAll();
+            }
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    private static User user(String password) {
+        return User.builder().username("alice").email("alice@supportportal.com").password(password).build();
+    }
+}
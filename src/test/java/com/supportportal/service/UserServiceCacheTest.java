@@ -0,0 +1,128 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.User;
+import com.supportportal.entity.UserPrinciple;
+import com.supportportal.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+import static com.supportportal.security.enumeration.Role.ROLE_USER;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+// every change commits, cached users are only dropped once it has
+@DataJpaTest(properties = "spring.jpa.database=H2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserService.class, LoginAttemptService.class, UserLookupCache.class})
+class UserServiceCacheTest {
+
+    private static final String USERNAME = "alice";
+    private static final String EMAIL = "alice@supportportal.com";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserLookupCache userLookupCache;
+
+    @Autowired
+    private LoginAttemptService loginAttemptService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private BCryptPasswordEncoder passwordEncoder;
+
+    @MockBean
+    private EmailService emailService;
+
+    @MockBean
+    private ProfileImageService profileImageService;
+
+    @MockBean
+    private ImageVariantService imageVariantService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.save(User.builder()
+                .userId("0123456789")
+                .username(USERNAME)
+                .email(EMAIL)
+                .password("old-hash")
+                .joinDate(new Date())
+                .isActive(true)
+                .isNotLocked(true)
+                .role(ROLE_USER.name())
+                .build());
+        when(passwordEncoder.encode(anyString())).thenReturn("new-hash");
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        userLookupCache.invalidateAll();
+        loginAttemptService.evictUserFromCache(USERNAME);
+    }
+
+    @Test
+    void resetPasswordIsNotServedStale() throws Exception {
+        assertEquals("old-hash", userService.findByUsername(USERNAME).getPassword());
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            try {
+                userService.resetPassword(EMAIL);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            // a login racing the reset still reads the committed row and caches it
+            assertEquals("old-hash", CompletableFuture.supplyAsync(() -> userService.findByUsername(USERNAME)).join().getPassword());
+            return null;
+        });
+
+        assertEquals("new-hash", userService.findByUsername(USERNAME).getPassword());
+        assertEquals("new-hash", userService.findByEmail(EMAIL).getPassword());
+    }
+
+    @Test
+    void rehashLeavesTheCachedUserUntouched() {
+        UserPrinciple cached = (UserPrinciple) userService.loadUserByUsername(USERNAME);
+
+        UserPrinciple rehashed = (UserPrinciple) userService.updatePassword(cached, "new-hash");
+
+        assertEquals("new-hash", rehashed.getPassword());
+        assertEquals("old-hash", cached.getPassword());
+        assertEquals("new-hash", userService.findByUsername(USERNAME).getPassword());
+    }
+
+    @Test
+    void lockoutLeavesTheCachedUserUntouched() {
+        User cached = userService.findByUsername(USERNAME);
+        for (int i = 0; i < LoginAttemptService.MAXIMUM_ATTEMPT_NUMBER; i++) {
+            loginAttemptService.addUserToCache(USERNAME);
+        }
+
+        UserPrinciple locked = (UserPrinciple) userService.loadUserByUsername(USERNAME);
+
+        assertFalse(locked.isAccountNonLocked());
+        assertTrue(cached.isNotLocked());
+        assertFalse(userService.findByUsername(USERNAME).isNotLocked());
+    }
+}
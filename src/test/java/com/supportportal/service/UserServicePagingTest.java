@@ -0,0 +1,90 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.User;
+import com.supportportal.entity.dto.UserPage;
+import com.supportportal.exception.domain.InvalidCursorException;
+import com.supportportal.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static com.supportportal.entity.enumeration.UserSortField.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UserServicePagingTest {
+
+    private UserRepository userRepository;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        userService = new UserService(userRepository, mock(BCryptPasswordEncoder.class), new LoginAttemptService(100),
+                mock(EmailService.class), new UserLookupCache(false, 60, 60, 100),
+                mock(ProfileImageService.class), mock(ImageVariantService.class));
+        ReflectionTestUtils.setField(userService, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(userService, "maxPageSize", 3);
+    }
+
+    @Test
+    void nextCursorSeeksPastTheLastRowOfThePage() throws InvalidCursorException {
+        when(userRepository.findPageOrderByUsername("", 0L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(user(7L, "anna"), user(3L, "bob|smith"), user(5L, "carl")));
+        when(userRepository.findPageOrderByUsername("bob|smith", 3L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(user(5L, "carl")));
+
+        UserPage first = userService.getUsers(null, 0, USERNAME);
+        assertEquals(2, first.getUsers().size());
+        assertNotNull(first.getNextCursor());
+        // url safe without escaping, a separator inside the username stays part of it
+        assertTrue(first.getNextCursor().matches("[A-Za-z0-9_-]+"), first.getNextCursor());
+
+        // the cursor keeps its own sort field, the requested one only applies to the first page
+        UserPage last = userService.getUsers(first.getNextCursor(), 0, EMAIL);
+        assertEquals(1, last.getUsers().size());
+        assertNull(last.getNextCursor());
+        verify(userRepository, never()).findPageOrderByEmail(any(), any(), any());
+    }
+
+    @Test
+    void pageSizeIsCappedAndTheIdIsTheOnlyKeyForIdOrder() throws InvalidCursorException {
+        when(userRepository.findPageOrderById(0L, PageRequest.of(0, 4)))
+                .thenReturn(List.of(user(1L, "a"), user(2L, "b"), user(3L, "c"), user(4L, "d")));
+        when(userRepository.findPageOrderById(3L, PageRequest.of(0, 4))).thenReturn(List.of(user(4L, "d")));
+
+        UserPage first = userService.getUsers(null, 1000, ID);
+        assertEquals(3, first.getUsers().size());
+
+        assertEquals(1, userService.getUsers(first.getNextCursor(), 1000, ID).getUsers().size());
+    }
+
+    @Test
+    void tamperedCursorsAreRejected() {
+        assertInvalid("not base64 ***");
+        assertInvalid(encode("NAME|1|alice"));
+        assertInvalid(encode("USERNAME|one|alice"));
+        assertInvalid(encode("USERNAME"));
+        verifyNoInteractions(userRepository);
+    }
+
+    private void assertInvalid(String cursor) {
+        InvalidCursorException exception = assertThrows(InvalidCursorException.class, () -> userService.getUsers(cursor, 0, ID));
+        assertTrue(exception.getMessage().endsWith(cursor));
+    }
+
+    private static String encode(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static User user(Long id, String username) {
+        return User.builder().id(id).username(username).email(username + "@supportportal.com").build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.supportportal.service;
+
+import com.supportportal.entity.User;
+import com.supportportal.entity.UserPrinciple;
+import com.supportportal.exception.domain.EmailExistException;
+import com.supportportal.exception.domain.UsernameExistException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.List;
+
+import static com.supportportal.security.enumeration.Role.ROLE_ADMIN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// each read path has to cost exactly one statement, authorities included, and register one select plus the insert
+@DataJpaTest(properties = {
+        "spring.jpa.database=H2",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({UserService.class, LoginAttemptService.class, UserLookupCache.class})
+class UserServiceQueryCountTest {
+
+    private static final int USER_COUNT = 10;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private BCryptPasswordEncoder passwordEncoder;
+
+    @MockBean
+    private EmailService emailService;
+
+    @MockBean
+    private ProfileImageService profileImageService;
+
+    @MockBean
+    private ImageVariantService imageVariantService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < USER_COUNT; i++) {
+            testEntityManager.persist(User.builder()
+                    .userId(String.valueOf(i))
+                    .username("user" + i)
+                    .email("user" + i + "@supportportal.com")
+                    .password("hash")
+                    .joinDate(new Date())
+                    .isActive(true)
+                    .isNotLocked(true)
+                    .role(ROLE_ADMIN.name())
+                    .build());
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        // register builds the profile image url from the current request
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(passwordEncoder.encode(any())).thenReturn("hash");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void getUsersRunsOneQuery() {
+        List<User> users = userService.getUsers();
+
+        users.forEach(user -> assertFalse(user.getAuthorities().isEmpty()));
+        assertEquals(USER_COUNT, users.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findByUsernameRunsOneQuery() {
+        User user = userService.findByUsername("user3");
+
+        assertEquals(ROLE_ADMIN.getAuthorities(), user.getAuthorities());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void registerRunsOneSelectAndOneInsert() throws Exception {
+        userService.register("New", "User", "newuser", "newuser@supportportal.com");
+
+        // the id comes from the pooled sequence block the setup already fetched
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void registerRejectsTakenUsernameOrEmailWithOneSelect() {
+        assertThrows(UsernameExistException.class, () -> userService.register("New", "User", "user1", "new@supportportal.com"));
+        assertThrows(EmailExistException.class, () -> userService.register("New", "User", "newuser", "user2@supportportal.com"));
+
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    // a concurrent registration lands between the check and the insert
+    @Test
+    void usernameConstraintViolationIsAUsernameExistException() {
+        registerConcurrently("racer", "racer-other@supportportal.com");
+
+        assertThrows(UsernameExistException.class, () -> userService.register("New", "User", "racer", "racer@supportportal.com"));
+    }
+
+    @Test
+    void emailConstraintViolationIsAnEmailExistException() {
+        registerConcurrently("racer-other", "racer@supportportal.com");
+
+        assertThrows(EmailExistException.class, () -> userService.register("New", "User", "racer", "racer@supportportal.com"));
+    }
+
+    // the password is encoded after the uniqueness check and before the insert
+    private void registerConcurrently(String username, String email) {
+        when(passwordEncoder.encode(any())).thenAnswer(invocation -> {
+            testEntityManager.persistAndFlush(User.builder()
+                    .userId("racer")
+                    .username(username)
+                    .email(email)
+                    .password("hash")
+                    .joinDate(new Date())
+                    .isActive(true)
+                    .isNotLocked(true)
+                    .role(ROLE_ADMIN.name())
+                    .build());
+            return "hash";
+        });
+    }
+
+    @Test
+    void loadUserByUsernameRunsOneQuery() {
+        UserPrinciple userPrinciple = (UserPrinciple) userService.loadUserByUsername("user5");
+
+        assertEquals(ROLE_ADMIN.getAuthorities().size(), userPrinciple.getAuthorities().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
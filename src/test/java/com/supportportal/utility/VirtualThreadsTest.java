@@ -0,0 +1,45 @@
+package com.supportportal.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// runs on whatever JVM builds the project, both branches are checked against isSupported
+class VirtualThreadsTest {
+
+    @Test
+    void platformThreadsWhenNotAskedFor() {
+        Thread thread = VirtualThreads.threadFactory("flush-", false).newThread(() -> { });
+
+        assertEquals("flush-1", thread.getName());
+        assertTrue(thread.isDaemon());
+        assertFalse(isVirtual(thread));
+    }
+
+    @Test
+    void virtualThreadsOnlyWhereSupported() throws Exception {
+        Thread thread = VirtualThreads.threadFactory("flush-", true).newThread(() -> { });
+
+        assertEquals("flush-1", thread.getName());
+        assertEquals(VirtualThreads.isSupported(), isVirtual(thread));
+        if (VirtualThreads.isSupported()) {
+            ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+            assertTrue(executor.submit(() -> isVirtual(Thread.currentThread())).get(5, TimeUnit.SECONDS));
+            executor.shutdown();
+        } else {
+            assertThrows(IllegalStateException.class, () -> VirtualThreads.newThreadPerTaskExecutor("http-virtual-"));
+        }
+    }
+
+    // Thread.isVirtual() is Java 21 API
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}